@@ -0,0 +1,51 @@
+package com.example.demo.controllers;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Razorpay signature check in verifyPayment: HMAC-SHA256 of
+ * "order_id|payment_id" plus hex encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentSignatureBenchmark {
+
+    private static final String ID_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    // Razorpay test secrets are 24 chars
+    private static final String SECRET = "Xq3vT9mZr2LkP8sW4nY7bJ1c";
+
+    private String[] payloads;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        payloads = new String[1024];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = "order_" + randomId(random) + "|pay_" + randomId(random);
+        }
+    }
+
+    // Razorpay ids are 14 alphanumerics after the prefix
+    private static String randomId(Random random) {
+        StringBuilder id = new StringBuilder(14);
+        for (int i = 0; i < 14; i++) {
+            id.append(ID_CHARS.charAt(random.nextInt(ID_CHARS.length())));
+        }
+        return id.toString();
+    }
+
+    @Benchmark
+    public String calculateHMAC() throws Exception {
+        String payload = payloads[next++ & (payloads.length - 1)];
+        return PaymentController.calculateHMAC(payload, SECRET);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.demo.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token resolution as done by JWTAuthFilter: the old per-request parser,
+ * the shared parser, and the digest-keyed claims cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTFilterBenchmark {
+
+    // Same secret as JWTUtil
+    private static final byte[] SECRET =
+            "MySecureSecretKeyForJWTTokenGenerationThatIsLongEnough12345".getBytes(StandardCharsets.UTF_8);
+
+    private JWTUtil jwtUtil;
+    private JWTClaimsCache cache;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtil = new JWTUtil();
+        cache = new JWTClaimsCache(jwtUtil);
+        token = jwtUtil.generateToken("tasker@example.com");
+        cache.resolveEmail(token);
+    }
+
+    @Benchmark
+    public String perRequestParser() {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET))
+                .build()
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+
+    @Benchmark
+    public String sharedParser() {
+        return jwtUtil.extractEmail(token);
+    }
+
+    @Benchmark
+    public String cachedClaims() {
+        return cache.resolveEmail(token);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.security;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue (login/register) and verification (every authenticated
+ * request before the claims cache) over a pool of distinct users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTUtilBenchmark {
+
+    private final JWTUtil jwtUtil = new JWTUtil();
+    private String[] emails;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setup() {
+        emails = new String[1024];
+        tokens = new String[emails.length];
+        for (int i = 0; i < emails.length; i++) {
+            emails[i] = "tasker" + i + "@example.com";
+            tokens[i] = jwtUtil.generateToken(emails[i]);
+        }
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(emails[next++ & (emails.length - 1)]);
+    }
+
+    @Benchmark
+    public String extractEmail() {
+        return jwtUtil.extractEmail(tokens[next++ & (tokens.length - 1)]);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.Task;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response time of accepting a bid on a task with N pending bids: the old
+ * find + save-per-bid reject loop against the transactional accept with a
+ * single updateMany. Each invocation starts from a freshly reset task.
+ * Needs a MongoDB replica set (transactions):
+ * -Djmh.args="AcceptBid -jvmArgs -Dbench.mongo.uri=mongodb://localhost:27017/?replicaSet=rs0"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AcceptBidBenchmark {
+
+    private static final String POSTER = "bench-poster";
+
+    @Param({"10", "100", "1000"})
+    public int pendingBids;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private TaskTransitionService transitions;
+    private String taskId;
+    private Bid winner;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017/?replicaSet=rs0"));
+        MongoDatabaseFactory dbFactory = new SimpleMongoClientDatabaseFactory(client, "airtasker_bench_accept");
+        mongoTemplate = new MongoTemplate(dbFactory);
+        transitions = new TaskTransitionService(mongoTemplate, new CounterService(mongoTemplate),
+                new MongoTransactionManager(dbFactory));
+
+        mongoTemplate.dropCollection(Task.class);
+        mongoTemplate.dropCollection(Bid.class);
+        // Collections must exist before they are written inside a transaction
+        mongoTemplate.createCollection(Task.class);
+        mongoTemplate.createCollection(Bid.class);
+        mongoTemplate.indexOps(Bid.class).ensureIndex(
+                new CompoundIndexDefinition(new Document("taskId", 1).append("bidderId", 1)).unique());
+
+        Task task = new Task();
+        task.setTitle("Accept benchmark");
+        task.setPosterId(POSTER);
+        task.setStatus("OPEN");
+        taskId = mongoTemplate.insert(task).getId();
+
+        List<Bid> bids = new ArrayList<>();
+        for (int i = 0; i < pendingBids; i++) {
+            Bid bid = new Bid();
+            bid.setTaskId(taskId);
+            bid.setBidderId("bidder-" + i);
+            bid.setBidderName("Bidder " + i);
+            bid.setBidAmount(100.0 + i);
+            bid.setStatus("PENDING");
+            bids.add(bid);
+        }
+        mongoTemplate.insertAll(bids);
+        winner = mongoTemplate.findOne(Query.query(Criteria.where("bidderId").is("bidder-0")), Bid.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(taskId)),
+                new Update().set("status", "OPEN").unset("assignedTo").unset("assignedToName"), Task.class);
+        mongoTemplate.updateMulti(Query.query(Criteria.where("taskId").is(taskId)),
+                Update.update("status", "PENDING"), Bid.class);
+        winner.setStatus("PENDING");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoTemplate.dropCollection(Task.class);
+        mongoTemplate.dropCollection(Bid.class);
+        client.close();
+    }
+
+    @Benchmark
+    public Object rejectLoop() {
+        Task task = mongoTemplate.findById(taskId, Task.class);
+        task.setStatus("ASSIGNED");
+        task.setAssignedTo(winner.getBidderId());
+        mongoTemplate.save(task);
+        winner.setStatus("ACCEPTED");
+        mongoTemplate.save(winner);
+
+        List<Bid> others = mongoTemplate.find(
+                Query.query(Criteria.where("taskId").is(taskId).and("status").is("PENDING")), Bid.class);
+        for (Bid other : others) {
+            if (!other.getId().equals(winner.getId())) {
+                other.setStatus("REJECTED");
+                mongoTemplate.save(other);
+            }
+        }
+        return task;
+    }
+
+    @Benchmark
+    public Object transactionalAccept() {
+        return transitions.accept(winner, POSTER);
+    }
+}
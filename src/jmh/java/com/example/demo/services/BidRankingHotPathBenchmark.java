@@ -0,0 +1,100 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.GeoLocation;
+import com.example.demo.models.Task;
+import com.example.demo.models.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single calls to calculateScore and the local explanation (formerly
+ * BidAIController.generateLocalExplanation), cycling through 1024
+ * different task/bidder/bid fixtures so branches see realistic variety.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BidRankingHotPathBenchmark {
+
+    private static final int FIXTURES = 1024;
+
+    private static final List<String> SKILLS = List.of(
+            "plumbing", "electrical", "cleaning", "moving", "painting", "carpentry",
+            "gardening", "assembly", "delivery", "tutoring", "cooking", "pet care");
+
+    // Rough city centres, tasks and taskers cluster around these
+    private static final double[][] CITIES = {
+            {12.97, 77.59}, {19.08, 72.88}, {28.61, 77.21}, {13.08, 80.27}, {18.52, 73.86}};
+
+    private final BidRankingService rankingService = new BidRankingService();
+    private final Task[] tasks = new Task[FIXTURES];
+    private final User[] users = new User[FIXTURES];
+    private final Bid[] bids = new Bid[FIXTURES];
+    private final double[] scores = new double[FIXTURES];
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < FIXTURES; i++) {
+            double[] city = CITIES[random.nextInt(CITIES.length)];
+
+            Task task = new Task();
+            task.setBudget(200 + random.nextInt(4800));
+            task.setRequiredSkills(pickSkills(random, random.nextInt(4)));
+            task.setLocation(location(city[0] + random.nextGaussian() * 0.05, city[1] + random.nextGaussian() * 0.05));
+            tasks[i] = task;
+
+            User user = new User();
+            user.setName("Tasker " + i);
+            // Many new taskers have no rating yet
+            user.setRating(random.nextInt(4) == 0 ? 0 : 2.5 + random.nextInt(26) / 10.0);
+            user.setTasksCompleted(random.nextInt(4) == 0 ? 0 : random.nextInt(60));
+            user.setSkills(pickSkills(random, 1 + random.nextInt(6)));
+            if (random.nextInt(5) != 0) {
+                user.setLocation(location(city[0] + random.nextGaussian() * 0.1, city[1] + random.nextGaussian() * 0.1));
+            }
+            users[i] = user;
+
+            Bid bid = new Bid();
+            bid.setBidAmount(task.getBudget() * (0.6 + random.nextDouble() * 0.8));
+            bids[i] = bid;
+
+            scores[i] = rankingService.calculateScore(user, task, bid);
+        }
+    }
+
+    private static List<String> pickSkills(Random random, int count) {
+        List<String> skills = new ArrayList<>(SKILLS);
+        Collections.shuffle(skills, random);
+        return new ArrayList<>(skills.subList(0, count));
+    }
+
+    private static GeoLocation location(double lat, double lng) {
+        GeoLocation location = new GeoLocation();
+        location.setLat(lat);
+        location.setLng(lng);
+        return location;
+    }
+
+    @Benchmark
+    public double calculateScore() {
+        int i = next++ & (FIXTURES - 1);
+        return rankingService.calculateScore(users[i], tasks[i], bids[i]);
+    }
+
+    @Benchmark
+    public String explain() {
+        int i = next++ & (FIXTURES - 1);
+        return rankingService.explain(users[i], tasks[i], bids[i], scores[i]);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.GeoLocation;
+import com.example.demo.models.Task;
+import com.example.demo.models.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring one task's bids: calculateScore per bid (stream + List.contains)
+ * against the primitive kernel, both including and excluding the cost of
+ * building its arrays. Run with -prof gc to see the allocation difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BidScoringBenchmark {
+
+    private static final List<String> SKILLS = List.of(
+            "plumbing", "electrical", "cleaning", "moving", "painting", "carpentry",
+            "gardening", "assembly", "delivery", "tutoring", "cooking", "pet care");
+
+    @Param({"10", "1000", "100000"})
+    public int bidCount;
+
+    private final BidRankingService rankingService = new BidRankingService();
+    private Task task;
+    private List<Bid> bids;
+    private List<User> users;
+    private BidScoringKernel kernel;
+    private double[] scores;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+
+        task = new Task();
+        task.setBudget(500);
+        task.setRequiredSkills(List.of("plumbing", "electrical", "assembly", "painting"));
+        task.setLocation(location(12.97, 77.59));
+
+        bids = new ArrayList<>(bidCount);
+        users = new ArrayList<>(bidCount);
+        for (int i = 0; i < bidCount; i++) {
+            User user = new User();
+            user.setRating(random.nextInt(51) / 10.0);
+            user.setTasksCompleted(random.nextInt(40));
+            List<String> userSkills = new ArrayList<>(SKILLS);
+            Collections.shuffle(userSkills, random);
+            user.setSkills(new ArrayList<>(userSkills.subList(0, 1 + random.nextInt(6))));
+            user.setLocation(location(12.97 + random.nextGaussian() * 0.1, 77.59 + random.nextGaussian() * 0.1));
+            users.add(user);
+
+            Bid bid = new Bid();
+            bid.setBidAmount(250 + random.nextInt(500));
+            bids.add(bid);
+        }
+
+        kernel = new BidScoringKernel(task, bids, users);
+        scores = new double[bidCount];
+    }
+
+    private static GeoLocation location(double lat, double lng) {
+        GeoLocation location = new GeoLocation();
+        location.setLat(lat);
+        location.setLng(lng);
+        return location;
+    }
+
+    @Benchmark
+    public double[] calculateScorePerBid() {
+        for (int i = 0; i < bidCount; i++) {
+            scores[i] = rankingService.calculateScore(users.get(i), task, bids.get(i));
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public double[] kernelIncludingBuild() {
+        new BidScoringKernel(task, bids, users).scoreAll(scores);
+        return scores;
+    }
+
+    @Benchmark
+    public double[] kernelScoreOnly() {
+        kernel.scoreAll(scores);
+        return scores;
+    }
+}
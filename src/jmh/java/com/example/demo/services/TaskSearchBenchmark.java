@@ -0,0 +1,123 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Task;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text-index search vs the old case-insensitive regex title scan on a
+ * synthetic corpus. Needs a running MongoDB:
+ *   -Djmh.args="TaskSearch -jvmArgs -Dbench.mongo.uri=mongodb://localhost:27017"
+ * The corpus (default 1M tasks) is seeded once into the airtasker_bench database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskSearchBenchmark {
+
+    private static final String[] WORDS = {
+            "fix", "leaking", "kitchen", "tap", "assemble", "ikea", "wardrobe", "paint", "bedroom",
+            "walls", "move", "sofa", "garden", "lawn", "mowing", "clean", "apartment", "deep",
+            "install", "ceiling", "fan", "wiring", "laptop", "repair", "tutor", "maths", "photos",
+            "wedding", "logo", "design", "dog", "walking", "party", "setup", "plumbing", "pipe"
+    };
+    private static final String[] CATEGORIES = {
+            "cleaning", "moving", "handyman", "gardening", "painting", "plumbing",
+            "electrical", "tech", "tutoring", "photography", "design", "pet", "event"
+    };
+
+    @Param({"1000000"})
+    public int corpusSize;
+
+    @Param({"leaking tap", "wedding photos"})
+    public String keyword;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private TaskSearchService searchService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String uri = System.getProperty("bench.mongo.uri", "mongodb://localhost:27017");
+        client = MongoClients.create(uri);
+        mongoTemplate = new MongoTemplate(client, "airtasker_bench");
+        searchService = new TaskSearchService(mongoTemplate);
+
+        IndexOperations indexOps = mongoTemplate.indexOps(Task.class);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(Task.class)
+                .forEach(indexOps::ensureIndex);
+
+        long existing = mongoTemplate.count(new Query(), Task.class);
+        if (existing < corpusSize) {
+            seed(corpusSize - (int) existing);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public Object textIndexSearch() {
+        return searchService.search(keyword, 0, 20);
+    }
+
+    @Benchmark
+    public Object regexTitleScan() {
+        // What TaskRepository.searchByTitle used to do
+        Query query = new Query(Criteria.where("title").regex(keyword, "i"));
+        return mongoTemplate.find(query, Task.class);
+    }
+
+    private void seed(int count) {
+        Random random = new Random(42);
+        List<Task> batch = new ArrayList<>(10_000);
+
+        for (int i = 0; i < count; i++) {
+            Task task = new Task();
+            task.setTitle(words(random, 4));
+            task.setDescription(words(random, 30));
+            task.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            task.setRequiredSkills(List.of(WORDS[random.nextInt(WORDS.length)], WORDS[random.nextInt(WORDS.length)]));
+            task.setBudget(50 + random.nextInt(5000));
+            task.setStatus(random.nextInt(10) < 7 ? "OPEN" : "COMPLETED");
+            task.setPosterId("poster-" + random.nextInt(50_000));
+            task.setCreatedAt(String.format("2024-%02d-%02dT10:%02d:%02d",
+                    1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(60), random.nextInt(60)));
+            batch.add(task);
+
+            if (batch.size() == 10_000) {
+                mongoTemplate.insert(batch, Task.class);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            mongoTemplate.insert(batch, Task.class);
+        }
+    }
+
+    private static String words(Random random, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
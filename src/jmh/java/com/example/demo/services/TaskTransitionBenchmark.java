@@ -0,0 +1,102 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Task;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of racing start() transitions from 8 threads over a small pool
+ * of tasks. After each iteration the number of successful transitions must
+ * equal the number of IN_PROGRESS tasks, i.e. no double wins.
+ * Needs MongoDB: -Djmh.args="TaskTransition -jvmArgs -Dbench.mongo.uri=..."
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class TaskTransitionBenchmark {
+
+    private static final String ASSIGNEE = "bench-assignee";
+
+    @Param({"100"})
+    public int taskCount;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private TaskTransitionService transitions;
+    private final List<String> taskIds = new ArrayList<>();
+
+    private final AtomicInteger wins = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017"));
+        MongoDatabaseFactory dbFactory = new SimpleMongoClientDatabaseFactory(client, "airtasker_bench_transitions");
+        mongoTemplate = new MongoTemplate(dbFactory);
+        transitions = new TaskTransitionService(mongoTemplate, new CounterService(mongoTemplate),
+                new MongoTransactionManager(dbFactory));
+
+        mongoTemplate.dropCollection(Task.class);
+        for (int i = 0; i < taskCount; i++) {
+            Task task = new Task();
+            task.setTitle("Task " + i);
+            task.setPosterId("bench-poster");
+            task.setAssignedTo(ASSIGNEE);
+            task.setStatus("ASSIGNED");
+            taskIds.add(mongoTemplate.insert(task).getId());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTasks() {
+        wins.set(0);
+        conflicts.set(0);
+        mongoTemplate.updateMulti(new Query(), Update.update("status", "ASSIGNED"), Task.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void verifyNoDoubleWins() {
+        long started = mongoTemplate.count(Query.query(Criteria.where("status").is("IN_PROGRESS")), Task.class);
+        if (started != wins.get()) {
+            throw new IllegalStateException("Lost update: " + wins.get() + " wins but " + started + " tasks started");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoTemplate.dropCollection(Task.class);
+        client.close();
+    }
+
+    @Benchmark
+    public Object raceStart() {
+        String id = taskIds.get(ThreadLocalRandom.current().nextInt(taskIds.size()));
+        try {
+            Task task = transitions.start(id, ASSIGNEE);
+            wins.incrementAndGet();
+            return task;
+        } catch (ResponseStatusException e) {
+            conflicts.incrementAndGet();
+            return e;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Wallet;
+import com.example.demo.models.WalletTransaction;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Many threads crediting and debiting one hot wallet at the same time:
+ * the old read-check-save against WalletService's conditional $inc plus
+ * ledger insert in one transaction. After every iteration the stored
+ * balance is compared with what the successful operations add up to. The
+ * atomic path fails the run on any drift, the old path just reports how
+ * many paise it lost. Needs a MongoDB replica set (transactions):
+ * -Djmh.args="WalletStress -jvmArgs -Dbench.mongo.uri=mongodb://localhost:27017/?replicaSet=rs0"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WalletStressBenchmark {
+
+    private static final String USER = "bench-wallet-user";
+    private static final long OPENING_PAISE = 10_000_00;
+    private static final long AMOUNT_PAISE = 1_50;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private WalletService wallets;
+
+    // Net effect of the operations that reported success
+    private final AtomicLong expectedPaise = new AtomicLong();
+    private volatile boolean atomicRan;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017/?replicaSet=rs0"));
+        MongoDatabaseFactory dbFactory = new SimpleMongoClientDatabaseFactory(client, "airtasker_bench_wallet");
+        mongoTemplate = new MongoTemplate(dbFactory);
+        wallets = new WalletService(mongoTemplate, new MongoTransactionManager(dbFactory));
+
+        mongoTemplate.dropCollection(Wallet.class);
+        mongoTemplate.dropCollection(WalletTransaction.class);
+        // Collections must exist before they are written inside a transaction
+        mongoTemplate.createCollection(Wallet.class);
+        mongoTemplate.createCollection(WalletTransaction.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        mongoTemplate.remove(new Query(), WalletTransaction.class);
+        mongoTemplate.upsert(Query.query(Criteria.where("userId").is(USER)),
+                Update.update("balancePaise", OPENING_PAISE), Wallet.class);
+        expectedPaise.set(OPENING_PAISE);
+        atomicRan = false;
+    }
+
+    @TearDown(Level.Iteration)
+    public void verify() {
+        long stored = mongoTemplate.findOne(Query.query(Criteria.where("userId").is(USER)), Wallet.class)
+                .getBalancePaise();
+        long drift = stored - expectedPaise.get();
+
+        if (atomicRan) {
+            long ledger = mongoTemplate.count(new Query(), WalletTransaction.class);
+            if (drift != 0) {
+                throw new IllegalStateException("Lost updates: balance " + stored
+                        + " paise, expected " + expectedPaise.get());
+            }
+            System.out.println("✅ No drift, " + ledger + " ledger entries");
+        } else if (drift != 0) {
+            System.out.println("⚠️ read-check-save drifted by " + drift + " paise");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoTemplate.dropCollection(Wallet.class);
+        mongoTemplate.dropCollection(WalletTransaction.class);
+        client.close();
+    }
+
+    @Benchmark
+    @Group("atomic")
+    @GroupThreads(4)
+    public Object atomicCredit() {
+        atomicRan = true;
+        Wallet wallet = wallets.credit(USER, AMOUNT_PAISE, "bench credit");
+        expectedPaise.addAndGet(AMOUNT_PAISE);
+        return wallet;
+    }
+
+    @Benchmark
+    @Group("atomic")
+    @GroupThreads(4)
+    public Object atomicDebit() {
+        Wallet wallet = wallets.debit(USER, AMOUNT_PAISE, "bench debit");
+        if (wallet != null) {
+            expectedPaise.addAndGet(-AMOUNT_PAISE);
+        }
+        return wallet;
+    }
+
+    @Benchmark
+    @Group("readCheckSave")
+    @GroupThreads(4)
+    public Object naiveCredit() {
+        Wallet wallet = mongoTemplate.findOne(Query.query(Criteria.where("userId").is(USER)), Wallet.class);
+        wallet.setBalancePaise(wallet.getBalancePaise() + AMOUNT_PAISE);
+        mongoTemplate.save(wallet);
+        expectedPaise.addAndGet(AMOUNT_PAISE);
+        return wallet;
+    }
+
+    @Benchmark
+    @Group("readCheckSave")
+    @GroupThreads(4)
+    public Object naiveDebit() {
+        Wallet wallet = mongoTemplate.findOne(Query.query(Criteria.where("userId").is(USER)), Wallet.class);
+        if (wallet.getBalancePaise() < AMOUNT_PAISE) {
+            return null;
+        }
+        wallet.setBalancePaise(wallet.getBalancePaise() - AMOUNT_PAISE);
+        mongoTemplate.save(wallet);
+        expectedPaise.addAndGet(-AMOUNT_PAISE);
+        return wallet;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.config;
+
+import com.example.demo.services.WalletService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+@Configuration
+public class MongoConfig {
+
+    // Multi-document transactions (needs a replica set, e.g. Atlas)
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory dbFactory) {
+        return new MongoTransactionManager(dbFactory);
+    }
+
+    /**
+     * Same template Boot would create, but duplicate wallets are merged
+     * first: the template builds the indexes as it starts, and the unique
+     * wallets.userId index can't be built over duplicates.
+     */
+    @Bean
+    public MongoTemplate mongoTemplate(MongoDatabaseFactory dbFactory, MongoConverter converter) {
+        WalletService.mergeDuplicateWallets(dbFactory);
+        return new MongoTemplate(dbFactory, converter);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.config;
 
 import com.example.demo.security.JWTAuthFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -29,12 +30,17 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Async dispatches (Mono / SSE results) were already authorized on the original request,
+                // the JWT filter doesn't run again for them
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // AUTH
                 .requestMatchers(
     "/auth/**",
     "/api/auth/**",
     "/api/payment/**",
-    "/actuator/**",
+    "/actuator/health",
+    "/actuator/health/**",
     "/error"
 ).permitAll()
 
@@ -43,11 +49,12 @@ public class SecurityConfig {
                 .requestMatchers(
                     "/api/categories/**",
                     "/api/tasks/open",
+                    "/api/tasks/nearby",
                     "/api/tasks/search/**",
                     "/api/tasks/category/**"
                 ).permitAll()
 
-                // EVERYTHING ELSE
+                // EVERYTHING ELSE (including /actuator/metrics)
                 .anyRequest().authenticated()
             )
             .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);  // ← ADD THIS LINE
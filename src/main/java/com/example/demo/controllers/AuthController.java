@@ -2,11 +2,16 @@ package com.example.demo.controllers;
 import org.springframework.security.core.context.SecurityContextHolder;
 import com.example.demo.models.User;
 import com.example.demo.repositories.UserRepository;
+import com.example.demo.security.HashingBusyException;
 import com.example.demo.security.JWTUtil;
+import com.example.demo.security.LoginAttemptLimiter;
+import com.example.demo.security.PasswordHashingService;
+import com.example.demo.services.TaskGeoService;
+import com.example.demo.services.UserSearchService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 
@@ -21,7 +26,10 @@ public class AuthController {
     private UserRepository userRepo;
 
     @Autowired
-    private PasswordEncoder encoder;
+    private PasswordHashingService hashing;
+
+    @Autowired
+    private LoginAttemptLimiter attemptLimiter;
 
     @Autowired
     private JWTUtil jwtUtil;
@@ -29,18 +37,25 @@ public class AuthController {
    
     // Update user profile during registration with timestamp
 @PostMapping("/register")
-public ResponseEntity<?> register(@RequestBody User user) {
+public ResponseEntity<?> register(@RequestBody User user, HttpServletRequest request) {
     System.out.println("=== REGISTER ENDPOINT HIT ===");
     System.out.println("Email: " + user.getEmail());
     
+    long retryAfter = attemptLimiter.tryAcquire(null, request.getRemoteAddr());
+    if (retryAfter > 0) {
+        return AuthResponses.tooManyAttempts(retryAfter);
+    }
+
     try {
         if (userRepo.findByEmail(user.getEmail()) != null) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(Map.of("error", "User already exists"));
         }
         
-        user.setPassword(encoder.encode(user.getPassword()));
+        user.setPassword(hashing.encode(user.getPassword()));
         user.setCreatedAt(LocalDateTime.now().toString()); // Add timestamp
+        user.setNormalizedSkills(UserSearchService.normalizeSkills(user.getSkills()));
+        user.setPosition(TaskGeoService.toPoint(user.getLocation()));
         User savedUser = userRepo.save(user);
         
         // Generate token immediately after registration
@@ -56,6 +71,8 @@ public ResponseEntity<?> register(@RequestBody User user) {
         ));
         
         return ResponseEntity.ok(response);
+    } catch (HashingBusyException e) {
+        return AuthResponses.hashingBusy(e);
     } catch (Exception e) {
         e.printStackTrace();
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -108,13 +125,19 @@ public ResponseEntity<?> forgotPassword(@RequestBody Map<String, String> data) {
 }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody User user) {
+    public ResponseEntity<?> login(@RequestBody User user, HttpServletRequest request) {
         System.out.println("Login endpoint hit with email: " + user.getEmail());
         
+        long retryAfter = attemptLimiter.tryAcquire(user.getEmail(), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return AuthResponses.tooManyAttempts(retryAfter);
+        }
+
         try {
             User dbUser = userRepo.findByEmail(user.getEmail());
 
-            if (dbUser != null && encoder.matches(user.getPassword(), dbUser.getPassword())) {
+            if (dbUser != null && hashing.matches(user.getPassword(), dbUser.getPassword())) {
+                attemptLimiter.recordSuccess(user.getEmail());
                 String token = jwtUtil.generateToken(dbUser.getEmail());
                 
                 Map<String, String> response = new HashMap<>();
@@ -124,8 +147,11 @@ public ResponseEntity<?> forgotPassword(@RequestBody Map<String, String> data) {
                 return ResponseEntity.ok(response);
             }
 
+            attemptLimiter.recordFailure(user.getEmail());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(Map.of("error", "Invalid credentials"));
+        } catch (HashingBusyException e) {
+            return AuthResponses.hashingBusy(e);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,27 @@
+package com.example.demo.controllers;
+
+import com.example.demo.security.HashingBusyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+// Responses shared by the endpoints that check passwords (login, register, change-password, delete account)
+final class AuthResponses {
+
+    private AuthResponses() {
+    }
+
+    static ResponseEntity<?> tooManyAttempts(long retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+            .body(Map.of("error", "Too many attempts, please try again later"));
+    }
+
+    static ResponseEntity<?> hashingBusy(HashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(Map.of("error", "Server is busy, please try again shortly"));
+    }
+}
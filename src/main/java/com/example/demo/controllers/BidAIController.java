@@ -1,16 +1,25 @@
 package com.example.demo.controllers;
 
 import com.example.demo.models.Bid;
+import com.example.demo.models.RankedBid;
 import com.example.demo.models.Task;
 import com.example.demo.models.User;
 import com.example.demo.repositories.BidRepository;
 import com.example.demo.repositories.TaskRepository;
-import com.example.demo.repositories.UserRepository;
+import com.example.demo.services.BidExplanationQueue;
 import com.example.demo.services.BidRankingService;
+import com.example.demo.services.GeminiService;
+import com.example.demo.services.ScoredBid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
 
@@ -25,107 +34,90 @@ public class BidAIController {
     private TaskRepository taskRepo;
 
     @Autowired
-    private UserRepository userRepo;
+    private BidRankingService rankingService;
 
     @Autowired
-    private BidRankingService rankingService;
+    private GeminiService geminiService;
+
+    @Autowired
+    private BidExplanationQueue explanationQueue;
+
+    private static final int MAX_EXPLAIN = 100;
 
     @PostMapping("/rank-bids/{taskId}")
-    public ResponseEntity<?> rankBids(@PathVariable String taskId) {
+    public ResponseEntity<?> rankBids(@PathVariable String taskId,
+                                      @RequestParam(required = false) Integer limit) {
 
         // 1️⃣ Fetch task
         Task task = taskRepo.findById(taskId)
                 .orElseThrow(() -> new RuntimeException("Task not found"));
 
-        // 2️⃣ Fetch bids
-        List<Bid> bids = bidRepo.findByTaskId(taskId);
-
-        if (bids.isEmpty()) {
-            return ResponseEntity.ok(Collections.emptyList());
+        if (limit != null && limit < 1) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit must be positive"));
         }
 
-        List<Map<String, Object>> rankedBids = new ArrayList<>();
-
-        // 3️⃣ Score + Local AI explanation
-        for (Bid bid : bids) {
-
-            User user = userRepo.findById(bid.getBidderId())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            double score = rankingService.calculateScore(user, task, bid);
-
-            String aiReason = generateLocalExplanation(user, task, bid, score);
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("bidId", bid.getId());
-            result.put("amount", bid.getBidAmount());
-            result.put("aiScore", score);
-            result.put("aiReason", aiReason);
-            result.put("bidderName", user.getName());
-            result.put("bidderRating", user.getRating());
-
-            // 🔥 BONUS FEATURE
-            result.put("confidence", Math.min(100, Math.round(score * 4)));
-
-            rankedBids.add(result);
+        // 2️⃣ Read the stored scores in order, top bids first
+        List<RankedBid> rankedBids = new ArrayList<>();
+        for (ScoredBid scored : rankingService.topBids(task, limit)) {
+            String reason = scored.bid().getAiExplanation();
+            if (reason == null) {
+                // Not precomputed yet, or cleared by a rescore; failed runs back off
+                if (explanationQueue.isDue(scored.bid())) {
+                    explanationQueue.enqueue(scored.bid().getId());
+                }
+                reason = rankingService.explain(scored.bidder(), task, scored.bid(), scored.score());
+            }
+            rankedBids.add(rankingService.toRanked(scored, reason));
         }
 
-        // 4️⃣ Sort by AI score (highest first)
-        rankedBids.sort((a, b) ->
-                Double.compare(
-                        (double) b.get("aiScore"),
-                        (double) a.get("aiScore")
-                )
-        );
-
-        // 5️⃣ Return ranked bids
         return ResponseEntity.ok(rankedBids);
     }
 
-    // ================== LOCAL AI LOGIC ==================
-
-    private String generateLocalExplanation(User user, Task task, Bid bid, double score) {
-
-        List<String> reasons = new ArrayList<>();
+    // Gemini explanations for the top bids, one request per batch of bids
+    @GetMapping("/explain/{taskId}")
+    public Mono<ResponseEntity<?>> explainBids(@PathVariable String taskId,
+                                               @RequestParam(defaultValue = "20") int limit) {
 
-        // 💰 Price logic
-        if (bid.getBidAmount() <= task.getBudget()) {
-            reasons.add("Bid price fits within the task budget");
-        } else {
-            reasons.add("Bid price exceeds the task budget");
+        Optional<Task> taskOpt = taskRepo.findById(taskId);
+        if (taskOpt.isEmpty()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Task not found")));
         }
-
-        // ⭐ Rating logic
-        if (user.getRating() >= 4.5) {
-            reasons.add("Tasker has an excellent rating");
-        } else if (user.getRating() >= 3.5) {
-            reasons.add("Tasker has a good rating");
-        } else if (user.getRating() > 0) {
-            reasons.add("Tasker has a low rating");
-        } else {
-            reasons.add("Tasker is new with no ratings");
+        if (limit < 1 || limit > MAX_EXPLAIN) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body(Map.of("error", "limit must be between 1 and " + MAX_EXPLAIN)));
         }
 
-        // 🧠 Experience logic
-        if (user.getTasksCompleted() >= 20) {
-            reasons.add("Highly experienced with many completed tasks");
-        } else if (user.getTasksCompleted() >= 5) {
-            reasons.add("Moderate task experience");
-        } else if (user.getTasksCompleted() > 0) {
-            reasons.add("Limited task experience");
-        } else {
-            reasons.add("No completed tasks yet");
-        }
+        Task task = taskOpt.get();
+
+        // topBids reads Mongo, keep it off the request thread
+        return Mono.fromCallable(() -> rankingService.topBids(task, limit))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(top -> geminiService.explainAll(task, top)
+                        .map(reasons -> {
+                            List<RankedBid> rankedBids = new ArrayList<>(top.size());
+                            for (ScoredBid scored : top) {
+                                rankedBids.add(rankingService.toRanked(scored, reasons.get(scored.bid().getId())));
+                            }
+                            return ResponseEntity.ok(rankedBids);
+                        }));
+    }
+
+    // Streams one bid's explanation as Gemini writes it (text/event-stream)
+    @GetMapping(value = "/explain/bid/{bidId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<String>>> streamExplanation(@PathVariable String bidId) {
+
+        Bid bid = bidRepo.findById(bidId).orElse(null);
+        Task task = bid == null ? null : taskRepo.findById(bid.getTaskId()).orElse(null);
+        User bidder = bid == null ? null
+                : rankingService.loadBidders(List.of(bid.getBidderId())).get(bid.getBidderId());
 
-        // 🎯 Final verdict
-        if (score >= 20) {
-            reasons.add("Overall this bid is highly recommended");
-        } else if (score >= 12) {
-            reasons.add("This bid is a good option");
-        } else {
-            reasons.add("This bid is less suitable compared to others");
+        if (bid == null || task == null || bidder == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Flux.just(ServerSentEvent.builder("Bid not found").event("error").build()));
         }
 
-        return String.join(". ", reasons) + ".";
+        double score = bid.getAiScore() != null ? bid.getAiScore() : rankingService.calculateScore(bidder, task, bid);
+        return ResponseEntity.ok(geminiService.streamExplanation(bidder, task, bid, score));
     }
 }
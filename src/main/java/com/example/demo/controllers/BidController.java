@@ -2,19 +2,26 @@ package com.example.demo.controllers;
 
 import com.example.demo.models.Bid;
 import com.example.demo.models.Task;
-import com.example.demo.models.User;
 import com.example.demo.models.Wallet;
-import com.example.demo.models.WalletTransaction;
 import com.example.demo.repositories.BidRepository;
 import com.example.demo.repositories.TaskRepository;
-import com.example.demo.repositories.UserRepository;
-import com.example.demo.repositories.WalletRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.services.BidExplanationQueue;
+import com.example.demo.services.BidRankingService;
+import com.example.demo.services.CounterService;
+import com.example.demo.services.IdempotencyService;
+import com.example.demo.services.TaskTransitionService;
+import com.example.demo.services.WalletService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -33,19 +40,31 @@ public class BidController {
     private TaskRepository taskRepo;
 
     @Autowired
-    private UserRepository userRepo;
+    private WalletService walletService;
 
     @Autowired
-    private WalletRepository walletRepo;
+    private IdempotencyService idempotency;
+
+    @Autowired
+    private TaskTransitionService taskTransitions;
+
+    @Autowired
+    private CounterService counters;
+
+    @Autowired
+    private BidRankingService rankingService;
+
+    @Autowired
+    private BidExplanationQueue explanationQueue;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
 
     // Place a bid on a task
     @PostMapping("/place")
-    public ResponseEntity<?> placeBid(@RequestBody Bid bid) {
+    public ResponseEntity<?> placeBid(@RequestBody Bid bid, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
@@ -60,7 +79,7 @@ public class BidController {
             Task task = taskOpt.get();
 
             // Can't bid on your own task
-            if (task.getPosterId().equals(user.getId())) {
+            if (task.getPosterId().equals(currentUser.id())) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", "You cannot bid on your own task"));
             }
@@ -71,21 +90,31 @@ public class BidController {
                     .body(Map.of("error", "This task is no longer open for bidding"));
             }
 
-            // Set bid details
-            bid.setBidderId(user.getId());
-            bid.setBidderName(user.getName());
-            bid.setBidderEmail(user.getEmail());
+            // Set bid details, the server owns id and the AI fields
+            bid.setId(null);
+            bid.setAiExplanation(null);
+            bid.setAiExplainAttemptAt(null);
+            bid.setBidderId(currentUser.id());
+            bid.setBidderName(currentUser.displayName());
+            bid.setBidderEmail(currentUser.email());
             bid.setTaskTitle(task.getTitle());
             bid.setStatus("PENDING");
             bid.setCreatedAt(LocalDateTime.now().toString());
+            bid.setAiScore(rankingService.score(task, bid));
 
+            // Unique (taskId, bidderId) index rejects a second bid
             Bid savedBid = bidRepo.save(bid);
 
             // Update task bid count
-            task.setBidCount(task.getBidCount() + 1);
-            taskRepo.save(task);
+            counters.incrementBidCount(task.getId());
+
+            // Gemini explanation is filled in in the background
+            explanationQueue.enqueue(savedBid.getId());
 
             return ResponseEntity.ok(savedBid);
+        } catch (DuplicateKeyException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "You have already placed a bid on this task"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -106,17 +135,14 @@ public class BidController {
 
     // Get my bids
     @GetMapping("/my-bids")
-    public ResponseEntity<?> getMyBids() {
+    public ResponseEntity<?> getMyBids(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
 
-            List<Bid> bids = bidRepo.findByBidderId(user.getId());
+            List<Bid> bids = bidRepo.findByBidderId(currentUser.id());
             return ResponseEntity.ok(bids);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -126,12 +152,9 @@ public class BidController {
 
     // Accept a bid (assign task)
     @PostMapping("/accept/{bidId}")
-    public ResponseEntity<?> acceptBid(@PathVariable String bidId) {
+    public ResponseEntity<?> acceptBid(@PathVariable String bidId, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
@@ -145,114 +168,49 @@ public class BidController {
 
             Bid bid = bidOpt.get();
 
-            // Get the task
-            Optional<Task> taskOpt = taskRepo.findById(bid.getTaskId());
-            if (!taskOpt.isPresent()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Task not found"));
-            }
-
-            Task task = taskOpt.get();
-
-            // Only task poster can accept bids
-            if (!task.getPosterId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                    .body(Map.of("error", "Only the task poster can accept bids"));
-            }
-
-            // Accept the bid
-            bid.setStatus("ACCEPTED");
-            bidRepo.save(bid);
-
-            // Assign task to bidder
-            task.setAssignedTo(bid.getBidderId());
-            task.setAssignedToName(bid.getBidderName());
-            task.setStatus("ASSIGNED");
-            task.setUpdatedAt(LocalDateTime.now().toString());
-            taskRepo.save(task);
-
-            // Reject all other pending bids
-            List<Bid> otherBids = bidRepo.findByTaskIdAndStatus(task.getId(), "PENDING");
-            for (Bid otherBid : otherBids) {
-                if (!otherBid.getId().equals(bidId)) {
-                    otherBid.setStatus("REJECTED");
-                    bidRepo.save(otherBid);
-                }
-            }
+            // Assign the task, accept the bid and reject the others in one transaction
+            Task task = taskTransitions.accept(bid, currentUser.id());
 
             return ResponseEntity.ok(Map.of(
                 "message", "Bid accepted successfully",
                 "bid", bid,
                 "task", task
             ));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                .body(Map.of("error", e.getReason()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
         }
     }
 
-    // Pay from wallet after bid is accepted
+    // Pay from wallet after bid is accepted, a retry with the same Idempotency-Key replays the first response
     @PostMapping("/{bidId}/pay-from-wallet")
-    public ResponseEntity<?> payFromWallet(@PathVariable String bidId) {
-        try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
+    public ResponseEntity<?> payFromWallet(@PathVariable String bidId,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                           @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        return idempotency.execute("bids.pay-from-wallet", currentUser == null ? null : currentUser.id(),
+                idempotencyKey, bidId, () -> doPayFromWallet(bidId, currentUser));
+    }
 
-            if (user == null) {
+    private ResponseEntity<?> doPayFromWallet(String bidId, AuthenticatedUser currentUser) {
+        try {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
 
-            Optional<Bid> bidOpt = bidRepo.findById(bidId);
-            if (!bidOpt.isPresent()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Bid not found"));
-            }
-
-            Bid bid = bidOpt.get();
-
-            Optional<Task> taskOpt = taskRepo.findById(bid.getTaskId());
-            if (!taskOpt.isPresent()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Task not found"));
-            }
-
-            Task task = taskOpt.get();
-
-            // Get or create wallet
-            Wallet wallet = walletRepo.findByUserId(user.getId())
-                    .orElseThrow(() -> new RuntimeException("Wallet not found"));
-
-            // Check balance
-            if (wallet.getBalance() < bid.getBidAmount()) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("error", "Insufficient wallet balance"));
-            }
-
-            // Deduct amount from wallet
-            wallet.setBalance(wallet.getBalance() - bid.getBidAmount());
-
-            // Create transaction record
-            WalletTransaction tx = new WalletTransaction();
-            tx.setType("DEBIT");
-            tx.setAmount(bid.getBidAmount());
-            tx.setReference("Task Payment: " + task.getId());
-            tx.setCreatedAt(LocalDateTime.now().toString());
-
-            wallet.getTransactions().add(tx);
-            walletRepo.save(wallet);
-
-            // Update bid and task status
-            bid.setStatus("PAID");
-            task.setStatus("IN_PROGRESS");
-
-            bidRepo.save(bid);
-            taskRepo.save(task);
+            // Bid ACCEPTED -> PAID, task -> IN_PROGRESS (poster only) and the debit in one transaction
+            Wallet wallet = walletService.payForBid(bidId, currentUser.id());
 
             return ResponseEntity.ok(Map.of(
                 "message", "Payment successful",
                 "remainingBalance", wallet.getBalance()
             ));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                .body(Map.of("error", e.getReason()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -261,12 +219,9 @@ public class BidController {
 
     // Reject a bid
     @PostMapping("/reject/{bidId}")
-    public ResponseEntity<?> rejectBid(@PathVariable String bidId) {
+    public ResponseEntity<?> rejectBid(@PathVariable String bidId, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
@@ -288,15 +243,17 @@ public class BidController {
             Task task = taskOpt.get();
 
             // Only task poster can reject bids
-            if (!task.getPosterId().equals(user.getId())) {
+            if (!task.getPosterId().equals(currentUser.id())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "Only the task poster can reject bids"));
             }
 
-            bid.setStatus("REJECTED");
-            bidRepo.save(bid);
+            taskTransitions.reject(bid.getId());
 
             return ResponseEntity.ok(Map.of("message", "Bid rejected successfully"));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                .body(Map.of("error", e.getReason()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -305,12 +262,9 @@ public class BidController {
 
     // Delete a bid (only by bidder before it's accepted)
     @DeleteMapping("/{bidId}")
-    public ResponseEntity<?> deleteBid(@PathVariable String bidId) {
+    public ResponseEntity<?> deleteBid(@PathVariable String bidId, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
@@ -324,7 +278,7 @@ public class BidController {
             Bid bid = bidOpt.get();
 
             // Only bidder can delete their own bid
-            if (!bid.getBidderId().equals(user.getId())) {
+            if (!bid.getBidderId().equals(currentUser.id())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "You can only delete your own bids"));
             }
@@ -335,15 +289,19 @@ public class BidController {
                     .body(Map.of("error", "Cannot delete an accepted bid"));
             }
 
-            bidRepo.deleteById(bidId);
+            // Owner and status in the filter: of two concurrent deletes only one removes it and decrements
+            long deleted = mongoTemplate.remove(
+                    Query.query(Criteria.where("_id").is(bidId)
+                            .and("bidderId").is(currentUser.id())
+                            .and("status").ne("ACCEPTED")),
+                    Bid.class).getDeletedCount();
+            if (deleted != 1) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Bid was already deleted or accepted"));
+            }
 
             // Update task bid count
-            Optional<Task> taskOpt = taskRepo.findById(bid.getTaskId());
-            if (taskOpt.isPresent()) {
-                Task task = taskOpt.get();
-                task.setBidCount(Math.max(0, task.getBidCount() - 1));
-                taskRepo.save(task);
-            }
+            counters.decrementBidCount(bid.getTaskId());
 
             return ResponseEntity.ok(Map.of("message", "Bid deleted successfully"));
         } catch (Exception e) {
@@ -1,14 +1,14 @@
 package com.example.demo.controllers;
 
 import com.example.demo.models.Task;
-import com.example.demo.models.User;
 import com.example.demo.repositories.BidRepository;
 import com.example.demo.repositories.TaskRepository;
 import com.example.demo.repositories.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -31,19 +31,16 @@ public class DashboardController {
 
     // Get dashboard statistics for current user
     @GetMapping("/stats")
-    public ResponseEntity<?> getDashboardStats() {
+    public ResponseEntity<?> getDashboardStats(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
 
             // Get task counts
-            List<Task> postedTasks = taskRepo.findByPosterId(user.getId());
-            List<Task> assignedTasks = taskRepo.findByAssignedTo(user.getId());
+            List<Task> postedTasks = taskRepo.findByPosterId(currentUser.id());
+            List<Task> assignedTasks = taskRepo.findByAssignedTo(currentUser.id());
             
             long openTasks = postedTasks.stream()
                 .filter(t -> t.getStatus().equals("OPEN"))
@@ -58,8 +55,8 @@ public class DashboardController {
                 .count();
 
             // Get bid counts
-            long myBids = bidRepo.findByBidderId(user.getId()).size();
-            long pendingBids = bidRepo.findByBidderId(user.getId()).stream()
+            long myBids = bidRepo.findByBidderId(currentUser.id()).size();
+            long pendingBids = bidRepo.findByBidderId(currentUser.id()).stream()
                 .filter(b -> b.getStatus().equals("PENDING"))
                 .count();
 
@@ -71,8 +68,12 @@ public class DashboardController {
             stats.put("completedTasks", completedTasks);
             stats.put("myBids", myBids);
             stats.put("pendingBids", pendingBids);
-            stats.put("rating", user.getRating());
-            stats.put("totalReviews", user.getTotalReviews());
+
+            // Rating fields are not part of the principal
+            userRepo.findById(currentUser.id()).ifPresent(user -> {
+                stats.put("rating", user.getRating());
+                stats.put("totalReviews", user.getTotalReviews());
+            });
 
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
@@ -83,18 +84,15 @@ public class DashboardController {
 
     // Get recent activity
     @GetMapping("/activity")
-    public ResponseEntity<?> getRecentActivity() {
+    public ResponseEntity<?> getRecentActivity(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
 
-            List<Task> recentPosted = taskRepo.findByPosterId(user.getId());
-            List<Task> recentAssigned = taskRepo.findByAssignedTo(user.getId());
+            List<Task> recentPosted = taskRepo.findByPosterId(currentUser.id());
+            List<Task> recentAssigned = taskRepo.findByAssignedTo(currentUser.id());
 
             // Sort by updatedAt and limit to 5 most recent
             recentPosted = recentPosted.stream()
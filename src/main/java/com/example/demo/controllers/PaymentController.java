@@ -1,12 +1,11 @@
 package com.example.demo.controllers;
 
 import com.example.demo.models.Bid;
-import com.example.demo.models.User;
 import com.example.demo.models.Wallet;
-import com.example.demo.models.WalletTransaction;
 import com.example.demo.repositories.BidRepository;
-import com.example.demo.repositories.UserRepository;
-import com.example.demo.repositories.WalletRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.services.IdempotencyService;
+import com.example.demo.services.WalletService;
 import com.razorpay.Order;
 import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
@@ -15,15 +14,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 @RestController
 @RequestMapping("/api/payment")
@@ -34,10 +33,10 @@ public class PaymentController {
     private BidRepository bidRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private WalletService walletService;
 
     @Autowired
-    private WalletRepository walletRepository;
+    private IdempotencyService idempotency;
 
     @Value("${razorpay.key.id:rzp_test_YOUR_KEY_ID}")
     private String razorpayKeyId;
@@ -46,39 +45,16 @@ public class PaymentController {
     private String razorpayKeySecret;
 
     @PostMapping("/create-order")
-    public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> data) {
+    public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> data, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
             // ✅ DEBUG LOGGING
             System.out.println("=== CREATE ORDER REQUEST ===");
             System.out.println("Request data: " + data);
             
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            System.out.println("🔍 Extracted email from JWT: " + email);
-            System.out.println("🔍 Authentication principal: " + SecurityContextHolder.getContext().getAuthentication().getPrincipal());
-            
-            User user = userRepository.findByEmail(email);
-            
-            if (user == null) {
-                System.err.println("❌ User NOT FOUND with email: " + email);
-                
-                // Check how many users exist in database
-                long totalUsers = userRepository.count();
-                System.err.println("❌ Total users in database: " + totalUsers);
-                
-                // Try to list first few users (for debugging)
-                try {
-                    var allUsers = userRepository.findAll();
-                    System.err.println("❌ Available users in DB:");
-                    allUsers.forEach(u -> System.err.println("   - " + u.getEmail()));
-                } catch (Exception e) {
-                    System.err.println("❌ Could not list users: " + e.getMessage());
-                }
-                
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("error", "User not found"));
             }
-            
-            System.out.println("✅ User FOUND: " + user.getEmail() + " (ID: " + user.getId() + ")");
 
             String bidId = data.get("bidId").toString();
             Bid bid = bidRepository.findById(bidId).orElse(null);
@@ -92,8 +68,8 @@ public class PaymentController {
             System.out.println("✅ Bid found: " + bid.getId() + " - Status: " + bid.getStatus());
 
             // Verify the bid belongs to the current user
-            if (!bid.getBidderId().equals(user.getId())) {
-                System.err.println("❌ Authorization failed - Bid bidder: " + bid.getBidderId() + ", Current user: " + user.getId());
+            if (!bid.getBidderId().equals(currentUser.id())) {
+                System.err.println("❌ Authorization failed - Bid bidder: " + bid.getBidderId() + ", Current user: " + currentUser.id());
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body(Map.of("error", "You are not authorized to pay for this bid"));
             }
@@ -143,13 +119,18 @@ public class PaymentController {
         }
     }
 
+    // A retry with the same Idempotency-Key replays the first response instead of debiting again
     @PostMapping("/verify")
-    public ResponseEntity<?> verifyPayment(@RequestBody Map<String, String> data) {
+    public ResponseEntity<?> verifyPayment(@RequestBody Map<String, String> data,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                           @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        return idempotency.execute("payment.verify", currentUser == null ? null : currentUser.id(),
+                idempotencyKey, new TreeMap<>(data).toString(), () -> doVerifyPayment(data, currentUser));
+    }
+
+    private ResponseEntity<?> doVerifyPayment(Map<String, String> data, AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepository.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("success", false, "message", "User not found"));
             }
@@ -173,45 +154,9 @@ public class PaymentController {
 
             System.out.println("✅ Signature verified!");
 
-            // Payment verified - Update bid status
-            Bid bid = bidRepository.findById(bidId).orElse(null);
-            
-            if (bid == null) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body(Map.of("success", false, "message", "Bid not found"));
-            }
-
-            // Update bid status to PAID
-            bid.setStatus("PAID");
-            bidRepository.save(bid);
-            
-            System.out.println("✅ Bid status updated to PAID");
-
-            // Get or create wallet
-            Wallet wallet = walletRepository.findByUserId(user.getId()).orElse(null);
-            
-            if (wallet == null) {
-                wallet = new Wallet();
-                wallet.setUserId(user.getId());
-                wallet.setBalance(0.0);
-                wallet = walletRepository.save(wallet);
-            }
-
-            // Deduct amount from wallet
-            double newBalance = wallet.getBalance() - bid.getBidAmount();
-            wallet.setBalance(Math.max(0, newBalance));
-
-            // ✅ Create transaction record matching your WalletTransaction model
-            WalletTransaction transaction = new WalletTransaction();
-            transaction.setType("DEBIT");
-            transaction.setAmount(bid.getBidAmount());
-            transaction.setReference("Payment for task: " + bid.getTaskTitle() + " (Payment ID: " + paymentId + ")");
-            transaction.setCreatedAt(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            
-            wallet.getTransactions().add(transaction);
-            walletRepository.save(wallet);
-            
-            System.out.println("✅ Wallet updated. New balance: " + wallet.getBalance());
+            // Payment verified: bid ACCEPTED -> PAID and the debit (never below zero) in one go,
+            // nothing is charged unless the bid was still accepted
+            Wallet wallet = walletService.settleExternalPayment(bidId, currentUser.id(), paymentId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -220,6 +165,9 @@ public class PaymentController {
             
             return ResponseEntity.ok(response);
             
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                    .body(Map.of("success", false, "message", e.getReason()));
         } catch (Exception e) {
             System.err.println("❌ Verification error: " + e.getMessage());
             e.printStackTrace();
@@ -228,7 +176,8 @@ public class PaymentController {
         }
     }
     
-    private String calculateHMAC(String data, String secret) throws Exception {
+    // Package-private for the benchmarks
+    static String calculateHMAC(String data, String secret) throws Exception {
         Mac mac = Mac.getInstance("HmacSHA256");
         SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(), "HmacSHA256");
         mac.init(secretKeySpec);
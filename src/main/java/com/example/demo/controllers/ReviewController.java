@@ -6,13 +6,18 @@ import com.example.demo.models.User;
 import com.example.demo.repositories.ReviewRepository;
 import com.example.demo.repositories.TaskRepository;
 import com.example.demo.repositories.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.services.BidRankingService;
+import com.example.demo.services.CursorPage;
+import com.example.demo.services.ReputationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -31,13 +36,16 @@ public class ReviewController {
     @Autowired
     private UserRepository userRepo;
 
+    @Autowired
+    private BidRankingService rankingService;
+
+    @Autowired
+    private ReputationService reputation;
+
     @PostMapping("/submit")
-    public ResponseEntity<?> submitReview(@RequestBody Review review) {
+    public ResponseEntity<?> submitReview(@RequestBody Review review, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User reviewer = userRepo.findByEmail(email);
-            
-            if (reviewer == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
@@ -60,8 +68,8 @@ public class ReviewController {
                     .body(Map.of("error", "Can only review completed tasks"));
             }
 
-            boolean isPoster = task.getPosterId().equals(reviewer.getId());
-            boolean isAssigned = task.getAssignedTo() != null && task.getAssignedTo().equals(reviewer.getId());
+            boolean isPoster = task.getPosterId().equals(currentUser.id());
+            boolean isAssigned = task.getAssignedTo() != null && task.getAssignedTo().equals(currentUser.id());
 
             if (!isPoster && !isAssigned) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
@@ -78,24 +86,15 @@ public class ReviewController {
 
             User reviewedUser = reviewedUserOpt.get();
 
-            review.setReviewerId(reviewer.getId());
-            review.setReviewerName(reviewer.getName());
+            review.setReviewerId(currentUser.id());
+            review.setReviewerName(currentUser.displayName());
             review.setReviewedUserId(reviewedUser.getId());
             review.setReviewedUserName(reviewedUser.getName());
             review.setCreatedAt(LocalDateTime.now().toString());
 
-            Review savedReview = reviewRepo.save(review);
-
-            List<Review> userReviews = reviewRepo.findByReviewedUserId(reviewedUser.getId());
-            double totalRating = 0;
-            for (Review r : userReviews) {
-                totalRating += r.getRating();
-            }
-            double avgRating = totalRating / userReviews.size();
-
-            reviewedUser.setRating(Math.round(avgRating * 10.0) / 10.0);
-            reviewedUser.setTotalReviews(userReviews.size());
-            userRepo.save(reviewedUser);
+            // Insert + $inc of the user's rating aggregates in one transaction
+            Review savedReview = reputation.submit(review);
+            rankingService.refreshBidder(reviewedUser.getId());
 
             return ResponseEntity.ok(Map.of(
                 "message", "Review submitted successfully",
@@ -108,11 +107,24 @@ public class ReviewController {
         }
     }
 
+    // Reviews newest first (paginated with ?cursor=&limit=), the first page also carries the star summary
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getReviewsForUser(@PathVariable String userId) {
+    public ResponseEntity<?> getReviewsForUser(@PathVariable String userId,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit) {
         try {
-            List<Review> reviews = reviewRepo.findByReviewedUserId(userId);
-            return ResponseEntity.ok(reviews);
+            CursorPage<Review> page = reputation.reviewsFor(userId, cursor, limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("items", page.items());
+            response.put("nextCursor", page.nextCursor());
+            if (cursor == null || cursor.isBlank()) {
+                response.put("summary", reputation.summary(userId));
+            }
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -131,12 +143,9 @@ public class ReviewController {
     }
 
     @DeleteMapping("/{reviewId}")
-    public ResponseEntity<?> deleteReview(@PathVariable String reviewId) {
+    public ResponseEntity<?> deleteReview(@PathVariable String reviewId, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
@@ -149,32 +158,14 @@ public class ReviewController {
 
             Review review = reviewOpt.get();
 
-            if (!review.getReviewerId().equals(user.getId())) {
+            if (!review.getReviewerId().equals(currentUser.id())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "You can only delete your own reviews"));
             }
 
-            reviewRepo.deleteById(reviewId);
-
-            Optional<User> reviewedUserOpt = userRepo.findById(review.getReviewedUserId());
-            if (reviewedUserOpt.isPresent()) {
-                User reviewedUser = reviewedUserOpt.get();
-                List<Review> userReviews = reviewRepo.findByReviewedUserId(reviewedUser.getId());
-                
-                if (userReviews.isEmpty()) {
-                    reviewedUser.setRating(0.0);
-                    reviewedUser.setTotalReviews(0);
-                } else {
-                    double totalRating = 0;
-                    for (Review r : userReviews) {
-                        totalRating += r.getRating();
-                    }
-                    double avgRating = totalRating / userReviews.size();
-                    reviewedUser.setRating(Math.round(avgRating * 10.0) / 10.0);
-                    reviewedUser.setTotalReviews(userReviews.size());
-                }
-                
-                userRepo.save(reviewedUser);
+            // Delete + $inc back in one transaction
+            if (reputation.delete(review, currentUser.id())) {
+                rankingService.refreshBidder(review.getReviewedUserId());
             }
 
             return ResponseEntity.ok(Map.of("message", "Review deleted successfully"));
@@ -1,17 +1,22 @@
 package com.example.demo.controllers;
 
 import com.example.demo.models.Task;
-import com.example.demo.models.User;
 import com.example.demo.repositories.TaskRepository;
-import com.example.demo.repositories.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.services.BidRankingService;
+import com.example.demo.services.CounterService;
+import com.example.demo.services.TaskGeoService;
+import com.example.demo.services.TaskListingService;
+import com.example.demo.services.TaskSearchService;
+import com.example.demo.services.TaskTransitionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -24,23 +29,36 @@ public class TaskController {
     private TaskRepository taskRepo;
 
     @Autowired
-    private UserRepository userRepo;
+    private CounterService counters;
+
+    @Autowired
+    private TaskListingService taskListing;
+
+    @Autowired
+    private TaskSearchService taskSearch;
+
+    @Autowired
+    private TaskGeoService taskGeo;
+
+    @Autowired
+    private TaskTransitionService taskTransitions;
+
+    @Autowired
+    private BidRankingService rankingService;
 
     // Create a new task
     @PostMapping("/create")
-    public ResponseEntity<?> createTask(@RequestBody Task task) {
+    public ResponseEntity<?> createTask(@RequestBody Task task, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
             
-            task.setPosterId(user.getId());
-            task.setPosterName(user.getName());
-            task.setPosterEmail(user.getEmail());
+            task.setPosterId(currentUser.id());
+            task.setPosterName(currentUser.displayName());
+            task.setPosterEmail(currentUser.email());
+            task.setPosition(TaskGeoService.toPoint(task.getLocation()));
             task.setStatus("OPEN");
             task.setCreatedAt(LocalDateTime.now().toString());
             task.setUpdatedAt(LocalDateTime.now().toString());
@@ -48,8 +66,7 @@ public class TaskController {
             Task savedTask = taskRepo.save(task);
             
             // Update user's posted tasks count
-            user.setTasksPosted(user.getTasksPosted() + 1);
-            userRepo.save(user);
+            counters.incrementTasksPosted(currentUser.id());
             
             return ResponseEntity.ok(savedTask);
         } catch (Exception e) {
@@ -58,36 +75,67 @@ public class TaskController {
         }
     }
 
-    // Get all open tasks
+    // Get open tasks, newest first (paginated with ?cursor=&limit=)
     @GetMapping("/open")
-    public ResponseEntity<?> getOpenTasks() {
+    public ResponseEntity<?> getOpenTasks(@RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer limit) {
         try {
-            List<Task> tasks = taskRepo.findByStatus("OPEN");
-            return ResponseEntity.ok(tasks);
+            return ResponseEntity.ok(taskListing.openTasks(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
         }
     }
 
-    // Get tasks by category
+    // Get tasks by category (paginated)
     @GetMapping("/category/{category}")
-    public ResponseEntity<?> getTasksByCategory(@PathVariable String category) {
+    public ResponseEntity<?> getTasksByCategory(@PathVariable String category,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) Integer limit) {
         try {
-            List<Task> tasks = taskRepo.findByCategory(category);
-            return ResponseEntity.ok(tasks);
+            return ResponseEntity.ok(taskListing.byCategory(category, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
         }
     }
 
-    // Search tasks
+    // Search open tasks by relevance (title, description, category, skills)
     @GetMapping("/search")
-    public ResponseEntity<?> searchTasks(@RequestParam String keyword) {
+    public ResponseEntity<?> searchTasks(@RequestParam String keyword,
+                                         @RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(required = false) Integer size) {
+        try {
+            return ResponseEntity.ok(taskSearch.search(keyword, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Open tasks near a point, nearest first (for the map view)
+    @GetMapping("/nearby")
+    public ResponseEntity<?> getNearbyTasks(@RequestParam double lat,
+                                            @RequestParam double lng,
+                                            @RequestParam(required = false) Double radiusKm,
+                                            @RequestParam(required = false) String category,
+                                            @RequestParam(required = false) Double minBudget,
+                                            @RequestParam(required = false) Double maxBudget,
+                                            @RequestParam(required = false) Integer limit) {
         try {
-            List<Task> tasks = taskRepo.searchByTitle(keyword);
-            return ResponseEntity.ok(tasks);
+            return ResponseEntity.ok(taskGeo.nearby(lat, lng, radiusKm, category, minBudget, maxBudget, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -110,40 +158,42 @@ public class TaskController {
         }
     }
 
-    // Get my posted tasks
+    // Get my posted tasks (paginated)
     @GetMapping("/my-tasks")
-    public ResponseEntity<?> getMyTasks() {
+    public ResponseEntity<?> getMyTasks(@AuthenticationPrincipal AuthenticatedUser currentUser,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) Integer limit) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
             
-            List<Task> tasks = taskRepo.findByPosterId(user.getId());
-            return ResponseEntity.ok(tasks);
+            return ResponseEntity.ok(taskListing.postedBy(currentUser.id(), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
         }
     }
 
-    // Get tasks assigned to me
+    // Get tasks assigned to me (paginated)
     @GetMapping("/assigned-to-me")
-    public ResponseEntity<?> getAssignedTasks() {
+    public ResponseEntity<?> getAssignedTasks(@AuthenticationPrincipal AuthenticatedUser currentUser,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
             
-            List<Task> tasks = taskRepo.findByAssignedTo(user.getId());
-            return ResponseEntity.ok(tasks);
+            return ResponseEntity.ok(taskListing.assignedTo(currentUser.id(), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -152,35 +202,21 @@ public class TaskController {
 
     // Update task
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateTask(@PathVariable String id, @RequestBody Task updatedTask) {
+    public ResponseEntity<?> updateTask(@PathVariable String id, @RequestBody Task updatedTask,
+                                        @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            Optional<Task> taskOpt = taskRepo.findById(id);
-            if (!taskOpt.isPresent()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Task not found"));
-            }
-            
-            Task task = taskOpt.get();
-            
-            // Only task poster can update
-            if (!task.getPosterId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                    .body(Map.of("error", "You can only update your own tasks"));
+            if (currentUser == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "User not found"));
             }
-            
-            task.setTitle(updatedTask.getTitle());
-            task.setDescription(updatedTask.getDescription());
-            task.setCategory(updatedTask.getCategory());
-            task.setLocation(updatedTask.getLocation());
-            task.setBudget(updatedTask.getBudget());
-            task.setDeadline(updatedTask.getDeadline());
-            task.setUpdatedAt(LocalDateTime.now().toString());
-            
-            Task saved = taskRepo.save(task);
+
+            // Only the poster, only while OPEN; a targeted $set so bidCount and status aren't overwritten
+            Task saved = taskTransitions.edit(id, currentUser.id(), updatedTask);
+            rankingService.refreshTask(saved.getId());
             return ResponseEntity.ok(saved);
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                .body(Map.of("error", e.getReason()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -189,11 +225,8 @@ public class TaskController {
 
     // Delete task
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteTask(@PathVariable String id) {
+    public ResponseEntity<?> deleteTask(@PathVariable String id, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
             Optional<Task> taskOpt = taskRepo.findById(id);
             if (!taskOpt.isPresent()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -203,7 +236,7 @@ public class TaskController {
             Task task = taskOpt.get();
             
             // Only task poster can delete
-            if (!task.getPosterId().equals(user.getId())) {
+            if (!task.getPosterId().equals(currentUser.id())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "You can only delete your own tasks"));
             }
@@ -218,30 +251,14 @@ public class TaskController {
 
     // Mark task as in progress
     @PutMapping("/{id}/start")
-    public ResponseEntity<?> startTask(@PathVariable String id) {
+    public ResponseEntity<?> startTask(@PathVariable String id, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            Optional<Task> taskOpt = taskRepo.findById(id);
-            if (!taskOpt.isPresent()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Task not found"));
-            }
-            
-            Task task = taskOpt.get();
-            
-            // Only assigned user can start task
-            if (!task.getAssignedTo().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                    .body(Map.of("error", "Only the assigned user can start this task"));
-            }
-            
-            task.setStatus("IN_PROGRESS");
-            task.setUpdatedAt(LocalDateTime.now().toString());
-            Task saved = taskRepo.save(task);
-            
+            // Single conditional update: must be ASSIGNED to the caller
+            Task saved = taskTransitions.start(id, currentUser.id());
             return ResponseEntity.ok(saved);
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                .body(Map.of("error", e.getReason()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -250,41 +267,18 @@ public class TaskController {
 
     // Mark task as completed
     @PutMapping("/{id}/complete")
-    public ResponseEntity<?> completeTask(@PathVariable String id) {
+    public ResponseEntity<?> completeTask(@PathVariable String id, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            Optional<Task> taskOpt = taskRepo.findById(id);
-            if (!taskOpt.isPresent()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Task not found"));
-            }
-            
-            Task task = taskOpt.get();
-            
-            // Only assigned user can complete task
-            if (!task.getAssignedTo().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                    .body(Map.of("error", "Only the assigned user can complete this task"));
-            }
-            
-            task.setStatus("COMPLETED");
-            task.setUpdatedAt(LocalDateTime.now().toString());
-            Task saved = taskRepo.save(task);
-            
-            // Update both users' completed tasks count
-            user.setTasksCompleted(user.getTasksCompleted() + 1);
-            userRepo.save(user);
-            
-            Optional<User> posterOpt = userRepo.findById(task.getPosterId());
-            if (posterOpt.isPresent()) {
-                User poster = posterOpt.get();
-                poster.setTasksCompleted(poster.getTasksCompleted() + 1);
-                userRepo.save(poster);
-            }
-            
+            // Conditional update + $inc on both users' completed counts
+            Task saved = taskTransitions.complete(id, currentUser.id());
+
+            // Experience feeds into their bid scores elsewhere
+            rankingService.refreshBidder(saved.getAssignedTo());
+            rankingService.refreshBidder(saved.getPosterId());
             return ResponseEntity.ok(saved);
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode())
+                .body(Map.of("error", e.getReason()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
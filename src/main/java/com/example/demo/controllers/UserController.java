@@ -2,15 +2,29 @@ package com.example.demo.controllers;
 
 import com.example.demo.models.User;
 import com.example.demo.repositories.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.security.AuthenticatedUserCache;
+import com.example.demo.security.HashingBusyException;
+import com.example.demo.security.LoginAttemptLimiter;
+import com.example.demo.security.PasswordHashingService;
+import com.example.demo.services.BidRankingService;
+import com.example.demo.services.TaskGeoService;
+import com.example.demo.services.UserSearchService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @RestController
@@ -22,14 +36,28 @@ public class UserController {
     private UserRepository userRepo;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PasswordHashingService hashing;
+
+    @Autowired
+    private LoginAttemptLimiter attemptLimiter;
+
+    @Autowired
+    private AuthenticatedUserCache userCache;
+
+    @Autowired
+    private BidRankingService rankingService;
+
+    @Autowired
+    private UserSearchService userSearch;
 
     // Get current user profile
     @GetMapping("/profile")
-    public ResponseEntity<?> getProfile() {
+    public ResponseEntity<?> getProfile(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
+            User user = userRepo.findById(currentUser.id()).orElse(null);
             
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -70,37 +98,52 @@ public class UserController {
 
     // Update profile
     @PutMapping("/profile")
-    public ResponseEntity<?> updateProfile(@RequestBody User updatedUser) {
+    public ResponseEntity<?> updateProfile(@RequestBody User updatedUser, @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-            
-            if (user == null) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "User not found"));
-            }
-            
-            // Update allowed fields
+            // $set only the edited fields, so concurrent $inc on ratings and task counters survive
+            Update update = new Update();
             if (updatedUser.getName() != null) {
-                user.setName(updatedUser.getName());
+                update.set("name", updatedUser.getName());
             }
             if (updatedUser.getPhone() != null) {
-                user.setPhone(updatedUser.getPhone());
+                update.set("phone", updatedUser.getPhone());
             }
             if (updatedUser.getLocation() != null) {
-                user.setLocation(updatedUser.getLocation());
+                update.set("location", updatedUser.getLocation());
+                update.set("position", TaskGeoService.toPoint(updatedUser.getLocation()));
             }
             if (updatedUser.getBio() != null) {
-                user.setBio(updatedUser.getBio());
+                update.set("bio", updatedUser.getBio());
             }
             if (updatedUser.getProfileImage() != null) {
-                user.setProfileImage(updatedUser.getProfileImage());
+                update.set("profileImage", updatedUser.getProfileImage());
             }
             if (updatedUser.getSkills() != null) {
-                user.setSkills(updatedUser.getSkills());
+                update.set("skills", updatedUser.getSkills());
+                update.set("normalizedSkills", UserSearchService.normalizeSkills(updatedUser.getSkills()));
+            }
+
+            // Old document back, to see whether anything the bid score uses changed
+            User before = update.getUpdateObject().isEmpty()
+                    ? null
+                    : mongoTemplate.findAndModify(
+                            Query.query(Criteria.where("_id").is(currentUser.id())),
+                            update,
+                            FindAndModifyOptions.options().returnNew(false),
+                            User.class);
+            User saved = userRepo.findById(currentUser.id()).orElse(null);
+
+            if (saved == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "User not found"));
+            }
+
+            userCache.invalidate(saved.getEmail());
+            // Name, phone, bio or avatar edits leave bid scores and their explanations alone
+            if (before != null && (!Objects.equals(before.getSkills(), saved.getSkills())
+                    || !Objects.equals(before.getLocation(), saved.getLocation()))) {
+                rankingService.refreshBidder(saved.getId());
             }
-            
-            User saved = userRepo.save(user);
             saved.setPassword(null);
             
             return ResponseEntity.ok(saved);
@@ -112,10 +155,16 @@ public class UserController {
 
     // Change password
     @PutMapping("/change-password")
-    public ResponseEntity<?> changePassword(@RequestBody Map<String, String> passwordData) {
+    public ResponseEntity<?> changePassword(@RequestBody Map<String, String> passwordData,
+                                            @AuthenticationPrincipal AuthenticatedUser currentUser,
+                                            HttpServletRequest request) {
+        long retryAfter = attemptLimiter.tryAcquire(currentUser.email(), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return AuthResponses.tooManyAttempts(retryAfter);
+        }
+
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
+            User user = userRepo.findById(currentUser.id()).orElse(null);
             
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -131,16 +180,23 @@ public class UserController {
             }
             
             // Verify current password
-            if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+            if (!hashing.matches(currentPassword, user.getPassword())) {
+                attemptLimiter.recordFailure(currentUser.email());
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Current password is incorrect"));
             }
+            attemptLimiter.recordSuccess(currentUser.email());
             
-            // Update password
-            user.setPassword(passwordEncoder.encode(newPassword));
-            userRepo.save(user);
+            // Update password, only that field
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(user.getId())),
+                    Update.update("password", hashing.encode(newPassword)),
+                    User.class);
+            userCache.invalidate(user.getEmail());
             
             return ResponseEntity.ok(Map.of("message", "Password changed successfully"));
+        } catch (HashingBusyException e) {
+            return AuthResponses.hashingBusy(e);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -149,10 +205,9 @@ public class UserController {
 
     // Get user statistics
     @GetMapping("/profile/stats")
-    public ResponseEntity<?> getUserStats() {
+    public ResponseEntity<?> getUserStats(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
+            User user = userRepo.findById(currentUser.id()).orElse(null);
             
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -173,44 +228,35 @@ public class UserController {
         }
     }
 
-    // Search users by skills
+    // Search users by skills (prefix match on the normalized skill index)
     @GetMapping("/search")
-    public ResponseEntity<?> searchUsers(@RequestParam String skill) {
+    public ResponseEntity<?> searchUsers(@RequestParam String skill,
+                                         @RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(required = false) Integer size) {
         try {
-            List<User> allUsers = userRepo.findAll();
-            List<User> matchedUsers = allUsers.stream()
-                .filter(u -> u.getSkills() != null && 
-                    u.getSkills().stream()
-                        .anyMatch(s -> s.toLowerCase().contains(skill.toLowerCase())))
-                .peek(u -> {
-                    u.setPassword(null);
-                    u.setEmail(null); // Hide email in search results
-                })
-                .toList();
-            
-            return ResponseEntity.ok(matchedUsers);
+            return ResponseEntity.ok(userSearch.searchBySkill(skill, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
         }
     }
 
-    // Get top rated users
+    // Get top rated users, optionally per skill category and/or region
     @GetMapping("/top-rated")
-    public ResponseEntity<?> getTopRatedUsers(@RequestParam(defaultValue = "10") int limit) {
+    public ResponseEntity<?> getTopRatedUsers(@RequestParam(defaultValue = "10") int limit,
+                                              @RequestParam(required = false) String category,
+                                              @RequestParam(required = false) Double lat,
+                                              @RequestParam(required = false) Double lng,
+                                              @RequestParam(required = false) Double radiusKm) {
         try {
-            List<User> allUsers = userRepo.findAll();
-            List<User> topUsers = allUsers.stream()
-                .filter(u -> u.getTotalReviews() > 0)
-                .sorted((a, b) -> Double.compare(b.getRating(), a.getRating()))
-                .limit(limit)
-                .peek(u -> {
-                    u.setPassword(null);
-                    u.setEmail(null);
-                })
-                .toList();
-            
+            List<User> topUsers = userSearch.topRated(limit, category, lat, lng, radiusKm);
             return ResponseEntity.ok(topUsers);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -219,10 +265,16 @@ public class UserController {
 
     // Delete account
     @DeleteMapping("/profile")
-    public ResponseEntity<?> deleteAccount(@RequestBody Map<String, String> passwordData) {
+    public ResponseEntity<?> deleteAccount(@RequestBody Map<String, String> passwordData,
+                                           @AuthenticationPrincipal AuthenticatedUser currentUser,
+                                           HttpServletRequest request) {
+        long retryAfter = attemptLimiter.tryAcquire(currentUser.email(), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return AuthResponses.tooManyAttempts(retryAfter);
+        }
+
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
+            User user = userRepo.findById(currentUser.id()).orElse(null);
             
             if (user == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -237,14 +289,19 @@ public class UserController {
             }
             
             // Verify password
-            if (!passwordEncoder.matches(password, user.getPassword())) {
+            if (!hashing.matches(password, user.getPassword())) {
+                attemptLimiter.recordFailure(currentUser.email());
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Incorrect password"));
             }
+            attemptLimiter.recordSuccess(currentUser.email());
             
             userRepo.deleteById(user.getId());
+            userCache.invalidate(user.getEmail());
             
             return ResponseEntity.ok(Map.of("message", "Account deleted successfully"));
+        } catch (HashingBusyException e) {
+            return AuthResponses.hashingBusy(e);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -1,19 +1,20 @@
 package com.example.demo.controllers;
 
-import com.example.demo.models.User;
 import com.example.demo.models.Wallet;
 import com.example.demo.models.WalletTransaction;
-import com.example.demo.repositories.UserRepository;
-import com.example.demo.repositories.WalletRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.services.CursorPage;
+import com.example.demo.services.IdempotencyService;
+import com.example.demo.services.WalletService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.TreeMap;
 
 @RestController
 @RequestMapping("/api/wallet")
@@ -21,49 +22,40 @@ import java.util.Optional;
 public class WalletController {
 
     @Autowired
-    private WalletRepository walletRepo;
+    private WalletService walletService;
 
     @Autowired
-    private UserRepository userRepo;
+    private IdempotencyService idempotency;
 
     // Get wallet details
     @GetMapping
-    public ResponseEntity<?> getWallet() {
+    public ResponseEntity<?> getWallet(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
 
-            Optional<Wallet> walletOpt = walletRepo.findByUserId(user.getId());
-            
-            if (!walletOpt.isPresent()) {
-                // Create wallet if it doesn't exist
-                Wallet newWallet = new Wallet();
-                newWallet.setUserId(user.getId());
-                newWallet.setBalance(0.0);
-                Wallet saved = walletRepo.save(newWallet);
-                return ResponseEntity.ok(saved);
-            }
-
-            return ResponseEntity.ok(walletOpt.get());
+            // Create wallet if it doesn't exist
+            return ResponseEntity.ok(walletService.getOrCreate(currentUser.id()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
         }
     }
 
-    // Add money to wallet
+    // Add money to wallet, a retry with the same Idempotency-Key replays the first response
     @PostMapping("/add-money")
-    public ResponseEntity<?> addMoney(@RequestBody Map<String, Double> request) {
-        try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
+    public ResponseEntity<?> addMoney(@RequestBody Map<String, Double> request,
+                                      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                      @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        return idempotency.execute("wallet.add-money", currentUser == null ? null : currentUser.id(),
+                idempotencyKey, new TreeMap<>(request).toString(), () -> doAddMoney(request, currentUser));
+    }
 
-            if (user == null) {
+    private ResponseEntity<?> doAddMoney(Map<String, Double> request, AuthenticatedUser currentUser) {
+        try {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
@@ -74,27 +66,8 @@ public class WalletController {
                     .body(Map.of("error", "Invalid amount"));
             }
 
-            // Get or create wallet
-            Wallet wallet = walletRepo.findByUserId(user.getId())
-                .orElseGet(() -> {
-                    Wallet newWallet = new Wallet();
-                    newWallet.setUserId(user.getId());
-                    newWallet.setBalance(0.0);
-                    return newWallet;
-                });
-
-            // Add money
-            wallet.setBalance(wallet.getBalance() + amount);
-
-            // Create transaction record
-            WalletTransaction tx = new WalletTransaction();
-            tx.setType("CREDIT");
-            tx.setAmount(amount);
-            tx.setReference("Money added to wallet");
-            tx.setCreatedAt(LocalDateTime.now().toString());
-
-            wallet.getTransactions().add(tx);
-            walletRepo.save(wallet);
+            // Add money and record the ledger entry
+            Wallet wallet = walletService.credit(currentUser.id(), WalletService.toPaise(amount), "Money added to wallet");
 
             return ResponseEntity.ok(Map.of(
                 "message", "Money added successfully",
@@ -106,25 +79,26 @@ public class WalletController {
         }
     }
 
-    // Get transaction history
+    // Get transaction history, newest first (paginated with ?cursor=&limit=)
     @GetMapping("/transactions")
-    public ResponseEntity<?> getTransactions() {
+    public ResponseEntity<?> getTransactions(@RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit,
+                                             @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            String email = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userRepo.findByEmail(email);
-
-            if (user == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not found"));
             }
 
-            Optional<Wallet> walletOpt = walletRepo.findByUserId(user.getId());
-            
-            if (!walletOpt.isPresent()) {
-                return ResponseEntity.ok(Map.of("transactions", new Object[]{}));
-            }
+            CursorPage<WalletTransaction> page = walletService.history(currentUser.id(), cursor, limit);
 
-            return ResponseEntity.ok(Map.of("transactions", walletOpt.get().getTransactions()));
+            Map<String, Object> response = new HashMap<>();
+            response.put("transactions", page.items());
+            response.put("nextCursor", page.nextCursor());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage()));
@@ -1,11 +1,22 @@
 package com.example.demo.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
 @Document(collection = "bids")
+@CompoundIndexes({
+    // One bid per bidder per task, also serves findByTaskId
+    @CompoundIndex(name = "task_bidder", def = "{'taskId': 1, 'bidderId': 1}", unique = true),
+    // Per-task leaderboard, read in score order
+    @CompoundIndex(name = "task_aiScore", def = "{'taskId': 1, 'aiScore': -1, '_id': 1}"),
+    // A bidder's live bids, rescored whenever their profile or rating changes
+    @CompoundIndex(name = "bidder_status", def = "{'bidderId': 1, 'status': 1}")
+})
 public class Bid {
     @Id
     private String id;
@@ -22,6 +33,11 @@ public class Bid {
     private String estimatedTime; // e.g., "2 days"
     
     private String status; // PENDING, ACCEPTED, REJECTED
+
+    private Double aiScore; // kept up to date by BidRankingService
+    private String aiExplanation; // Gemini text, filled in by BidExplanationQueue
+    @JsonIgnore
+    private Long aiExplainAttemptAt; // epoch millis of the last precompute run, for backoff
     
     private String createdAt;
 }
\ No newline at end of file
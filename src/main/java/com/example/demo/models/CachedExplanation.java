@@ -0,0 +1,21 @@
+package com.example.demo.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Data
+@Document(collection = "explanation_cache")
+public class CachedExplanation {
+    @Id
+    private String key; // quantized bid features, see ExplanationFeatures
+
+    private String text;
+
+    // Mongo's TTL monitor removes the entry once this passes
+    @Indexed(expireAfterSeconds = 0)
+    private Date expiresAt;
+}
@@ -0,0 +1,27 @@
+package com.example.demo.models;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Data
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    @Id
+    private String key; // endpoint:userId:Idempotency-Key
+
+    private String owner; // token of the request holding the claim
+    private String fingerprint; // the request the key was first used with
+    private String state; // IN_PROGRESS, DONE
+
+    private int status;
+    private String body; // JSON of the first response
+
+    // Mongo's TTL monitor removes the entry once this passes,
+    // for IN_PROGRESS it's also when another instance may take the key over
+    @Indexed(expireAfterSeconds = 0)
+    private Date expiresAt;
+}
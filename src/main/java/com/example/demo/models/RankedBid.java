@@ -0,0 +1,13 @@
+package com.example.demo.models;
+
+// One row of /api/ai/rank-bids, same JSON keys as before
+public record RankedBid(
+        String bidId,
+        double amount,
+        double aiScore,
+        String aiReason,
+        String bidderName,
+        double bidderRating,
+        long confidence
+) {
+}
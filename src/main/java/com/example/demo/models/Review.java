@@ -2,10 +2,13 @@ package com.example.demo.models;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
 @Document(collection = "reviews")
+// Keyset pagination for a user's reviews: (reviewedUserId, createdAt desc, _id desc)
+@CompoundIndex(name = "reviewed_createdAt", def = "{'reviewedUserId': 1, 'createdAt': -1, '_id': -1}")
 public class Review {
     @Id
     private String id;
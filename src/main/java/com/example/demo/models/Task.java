@@ -1,7 +1,14 @@
 package com.example.demo.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -9,17 +16,33 @@ import java.util.List;
 
 @Data
 @Document(collection = "tasks")
+// Keyset pagination indexes: (filter, createdAt desc, _id desc)
+@CompoundIndexes({
+    @CompoundIndex(name = "status_createdAt", def = "{'status': 1, 'createdAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "category_createdAt", def = "{'category': 1, 'createdAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "poster_createdAt", def = "{'posterId': 1, 'createdAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "assignee_createdAt", def = "{'assignedTo': 1, 'createdAt': -1, '_id': -1}")
+})
 public class Task {
 
     @Id
     private String id;
 
+    // Weighted text index used by TaskSearchService
+    @TextIndexed(weight = 5)
     private String title;
+    @TextIndexed
     private String description;
+    @TextIndexed(weight = 2)
     private String category;
 
     private GeoLocation location; // ✅ MAP LOCATION
 
+    // GeoJSON copy of location for the "nearby" query, kept server side
+    @JsonIgnore
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint position;
+
     private double budget;
     private String deadline;
 
@@ -33,6 +56,7 @@ public class Task {
     private String status;
 
     private List<String> images = new ArrayList<>();
+    @TextIndexed(weight = 3)
     private List<String> requiredSkills = new ArrayList<>();
 
     private String createdAt;
@@ -0,0 +1,43 @@
+package com.example.demo.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.TextScore;
+
+// Lightweight task projection for listings (no description / images)
+@Data
+public class TaskCard {
+
+    @Id
+    private String id;
+
+    private String title;
+    private String category;
+
+    private GeoLocation location;
+
+    private double budget;
+    private String deadline;
+
+    private String posterId;
+    private String posterName;
+
+    private String assignedTo;
+    private String assignedToName;
+
+    private String status;
+
+    private String createdAt;
+
+    private int bidCount;
+
+    // Only set by the nearby query
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double distanceKm;
+
+    // Only set by text search
+    @TextScore
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Float score;
+}
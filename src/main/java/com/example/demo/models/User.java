@@ -1,13 +1,27 @@
 package com.example.demo.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Document(collection = "users")
+@CompoundIndexes({
+    // Top-rated leaderboard: totalReviews > 0 sorted by rating
+    @CompoundIndex(name = "rating_reviews", def = "{'rating': -1, 'totalReviews': -1}"),
+    // Same, per skill category
+    @CompoundIndex(name = "skill_rating_reviews", def = "{'normalizedSkills': 1, 'rating': -1, 'totalReviews': -1}")
+})
 public class User {
     @Id
     private String id;
@@ -18,6 +32,11 @@ public class User {
     private String phone;
     private GeoLocation location;
 
+    // GeoJSON copy of location for the regional leaderboard
+    @JsonIgnore
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint position;
+
     private String bio;
     private String profileImage;
     
@@ -25,10 +44,20 @@ public class User {
     
     private double rating = 0.0;
     private int totalReviews = 0;
+
+    // Running aggregates kept by ReputationService, rating = ratingSum / ratingCount
+    private long ratingSum = 0;
+    private int ratingCount = 0;
+    private Map<String, Integer> ratingHistogram = new HashMap<>(); // "1".."5" -> count
     private int tasksCompleted = 0;
     private int tasksPosted = 0;
     
     private List<String> skills = new ArrayList<>();
+
+    // Lowercased skills and their words, for prefix search (see UserSearchService),
+    // indexed as the leading field of skill_rating_reviews
+    @JsonIgnore
+    private List<String> normalizedSkills = new ArrayList<>();
     private boolean isVerified = false;
     
     private String createdAt;
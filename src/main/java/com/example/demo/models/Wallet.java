@@ -2,11 +2,9 @@ package com.example.demo.models;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @Data
 @Document(collection = "wallets")
 public class Wallet {
@@ -14,8 +12,16 @@ public class Wallet {
     @Id
     private String id;
 
+    // One wallet per user, every wallet read and write looks it up by this
+    @Indexed(unique = true)
     private String userId;
-    private double balance = 0.0;
 
-    private List<WalletTransaction> transactions = new ArrayList<>();
+    // Balance snapshot in paise (integer, changed only with $inc), history lives in wallet_transactions
+    private long balancePaise = 0;
+    private String updatedAt;
+
+    // Rupees for API responses, not stored
+    public double getBalance() {
+        return balancePaise / 100.0;
+    }
 }
@@ -1,11 +1,28 @@
 package com.example.demo.models;
 
 import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
 
+// Append-only ledger entry, one document per wallet movement
 @Data
+@Document(collection = "wallet_transactions")
+// History pagination: (userId, createdAt desc, _id desc)
+@CompoundIndex(name = "user_createdAt", def = "{'userId': 1, 'createdAt': -1, '_id': -1}")
 public class WalletTransaction {
+
+    @Id
+    private String id;
+
+    private String userId;
     private String type; // ADD, DEBIT, CREDIT
-    private double amount;
+    private long amountPaise;
     private String reference;
     private String createdAt;
+
+    // Rupees for API responses, not stored
+    public double getAmount() {
+        return amountPaise / 100.0;
+    }
 }
@@ -0,0 +1,16 @@
+package com.example.demo.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+/**
+ * The caller as resolved once by JWTAuthFilter. Controllers take it with
+ * {@code @AuthenticationPrincipal} instead of looking the user up by email.
+ * getName() stays the email so Authentication.getName() keeps working.
+ */
+public record AuthenticatedUser(String id, String email, String displayName) implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.security;
+
+import com.example.demo.models.User;
+import com.example.demo.repositories.UserRepository;
+import com.example.demo.services.LruCache;
+import org.springframework.stereotype.Component;
+
+/**
+ * Short-lived email -> AuthenticatedUser near-cache so most authenticated
+ * requests skip the findByEmail round trip. UserController invalidates it
+ * when a user edits, re-passwords or deletes their account.
+ */
+@Component
+public class AuthenticatedUserCache {
+
+    private static final int MAX_ENTRIES = 10_000;
+    private static final long TTL_MILLIS = 60_000; // 1 minute
+
+    private final UserRepository userRepo;
+    private final LruCache<String, CachedUser> cache = new LruCache<>(MAX_ENTRIES);
+
+    public AuthenticatedUserCache(UserRepository userRepo) {
+        this.userRepo = userRepo;
+    }
+
+    // Returns null when no user exists for the email (e.g. account deleted)
+    public AuthenticatedUser resolve(String email) {
+        long now = System.currentTimeMillis();
+
+        CachedUser cached = cache.get(email);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.user;
+        }
+
+        User user = userRepo.findByEmail(email);
+        if (user == null) {
+            cache.remove(email);
+            return null;
+        }
+
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getEmail(), user.getName());
+        cache.put(email, new CachedUser(principal, now + TTL_MILLIS));
+        return principal;
+    }
+
+    public void invalidate(String email) {
+        if (email != null) {
+            cache.remove(email);
+        }
+    }
+
+    private record CachedUser(AuthenticatedUser user, long expiresAt) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.security;
+
+/**
+ * Thrown when the password hashing pool is saturated. Controllers turn it
+ * into a 503 with a Retry-After header.
+ */
+public class HashingBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public HashingBusyException(long retryAfterSeconds) {
+        super("Password hashing is busy, retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
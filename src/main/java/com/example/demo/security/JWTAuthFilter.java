@@ -4,6 +4,8 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -16,10 +18,14 @@ import java.util.Collections;
 @Component
 public class JWTAuthFilter extends OncePerRequestFilter {
 
-    private final JWTUtil jwtUtil;
+    private static final Logger log = LoggerFactory.getLogger(JWTAuthFilter.class);
 
-    public JWTAuthFilter(JWTUtil jwtUtil) {
-        this.jwtUtil = jwtUtil;
+    private final JWTClaimsCache claimsCache;
+    private final AuthenticatedUserCache userCache;
+
+    public JWTAuthFilter(JWTClaimsCache claimsCache, AuthenticatedUserCache userCache) {
+        this.claimsCache = claimsCache;
+        this.userCache = userCache;
     }
 
     @Override
@@ -28,7 +34,7 @@ public class JWTAuthFilter extends OncePerRequestFilter {
         // ✅ REMOVED /api/payment/ - it NEEDS authentication!
         return path.startsWith("/auth/")
             || path.startsWith("/api/auth/")
-            || path.startsWith("/actuator/")
+            || path.startsWith("/actuator/health")
             || path.equals("/error");
     }
 
@@ -41,33 +47,31 @@ public class JWTAuthFilter extends OncePerRequestFilter {
         
         String header = request.getHeader("Authorization");
         
-        System.out.println("🔍 JWT Filter - Path: " + request.getServletPath());
-        System.out.println("🔍 JWT Filter - Authorization header: " + (header != null ? "Present" : "Missing"));
-        
         if (header != null && header.startsWith("Bearer ")) {
             String token = header.substring(7);
             try {
-                String email = jwtUtil.extractEmail(token);
-                System.out.println("✅ JWT Filter - Extracted email: " + email);
-                
-                UsernamePasswordAuthenticationToken auth =
-                        new UsernamePasswordAuthenticationToken(
-                                email,
-                                null,
-                                Collections.emptyList()
-                        );
-                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(auth);
-                
-                System.out.println("✅ JWT Filter - Authentication set for: " + email);
+                // Signature is only verified the first time we see a token
+                String email = claimsCache.resolveEmail(token);
+
+                // Resolve the user once here, controllers get it via @AuthenticationPrincipal
+                AuthenticatedUser principal = userCache.resolve(email);
+
+                if (principal != null) {
+                    UsernamePasswordAuthenticationToken auth =
+                            new UsernamePasswordAuthenticationToken(
+                                    principal,
+                                    null,
+                                    Collections.emptyList()
+                            );
+                    auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(auth);
+                }
             } catch (Exception e) {
-                System.err.println("❌ JWT Filter - Token validation failed: " + e.getMessage());
+                log.debug("JWT validation failed for {}: {}", request.getServletPath(), e.getMessage());
                 SecurityContextHolder.clearContext();
             }
-        } else {
-            System.err.println("❌ JWT Filter - No valid Authorization header");
         }
         
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+}
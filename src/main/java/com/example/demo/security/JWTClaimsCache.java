@@ -0,0 +1,75 @@
+package com.example.demo.security;
+
+import com.example.demo.services.LruCache;
+import io.jsonwebtoken.Claims;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Remembers the subject of tokens whose signature has already been verified,
+ * keyed by a SHA-256 digest of the token so raw tokens are never held in memory.
+ * Entries die with the token's own expiry, or as the least recently used
+ * once the cache is full.
+ */
+@Component
+public class JWTClaimsCache {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final JWTUtil jwtUtil;
+    private final LruCache<String, CachedClaims> cache = new LruCache<>(MAX_ENTRIES);
+
+    public JWTClaimsCache(JWTUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+
+    public String resolveEmail(String token) {
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+
+        CachedClaims cached = cache.get(key);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return cached.email;
+            }
+            cache.remove(key, cached);
+        }
+
+        // Throws for bad signatures / expired tokens, nothing gets cached then
+        Claims claims = jwtUtil.extractClaims(token);
+        Date expiration = claims.getExpiration();
+
+        if (expiration != null) {
+            cache.put(key, new CachedClaims(claims.getSubject(), expiration.getTime()));
+        }
+
+        return claims.getSubject();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private static String digest(String token) {
+        MessageDigest md = SHA256.get();
+        md.reset();
+        byte[] hash = md.digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    private record CachedClaims(String email, long expiresAt) {
+    }
+}
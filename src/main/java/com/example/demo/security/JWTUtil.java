@@ -14,6 +14,11 @@ public class JWTUtil {
     // ✅ FIXED SECRET KEY (same key every time)
     private static final String SECRET = "MySecureSecretKeyForJWTTokenGenerationThatIsLongEnough12345";
     private static final SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+
+    // Parsers are immutable and thread-safe, so build it once
+    private static final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(key)
+            .build();
     
     private static final long EXPIRATION = 86400000; // 1 day
 
@@ -26,12 +31,12 @@ public class JWTUtil {
                 .compact();
     }
 
+    // Verifies the signature and expiry, throws JwtException otherwise
+    public Claims extractClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
     public String extractEmail(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return extractClaims(token).getSubject();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,125 @@
+package com.example.demo.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fixed-window attempt counters per email and per client IP. Every attempt
+ * counts against its IP; an email only counts failed passwords, so a user
+ * who logs in often never locks themselves out. Keys are spread
+ * over a fixed number of lock stripes so concurrent logins for different
+ * users don't contend on one lock.
+ */
+@Component
+public class LoginAttemptLimiter {
+
+    private static final int STRIPES = 64;
+    private static final int MAX_KEYS_PER_STRIPE = 4096;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int maxPerEmail;
+    private final int maxPerIp;
+    private final long windowMillis;
+
+    public LoginAttemptLimiter(
+            @Value("${auth.attempts.max-per-email:10}") int maxPerEmail,
+            @Value("${auth.attempts.max-per-ip:50}") int maxPerIp,
+            @Value("${auth.attempts.window-seconds:300}") long windowSeconds
+    ) {
+        this.maxPerEmail = maxPerEmail;
+        this.maxPerIp = maxPerIp;
+        this.windowMillis = windowSeconds * 1000;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Checks the email's failures and records one attempt for the IP
+     * (either may be null). Returns 0 when allowed, otherwise the seconds
+     * until the window resets.
+     */
+    public long tryAcquire(String email, String ip) {
+        long now = System.currentTimeMillis();
+
+        if (email != null) {
+            long wait = hit(emailKey(email), maxPerEmail, now, false);
+            if (wait > 0) return wait;
+        }
+        if (ip != null) {
+            return hit("i:" + ip, maxPerIp, now, true);
+        }
+        return 0;
+    }
+
+    // Wrong password for this email
+    public void recordFailure(String email) {
+        if (email != null) {
+            hit(emailKey(email), maxPerEmail, System.currentTimeMillis(), true);
+        }
+    }
+
+    // Right password: earlier failures no longer count
+    public void recordSuccess(String email) {
+        if (email != null) {
+            String key = emailKey(email);
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                stripe.windows.remove(key);
+            }
+        }
+    }
+
+    private static String emailKey(String email) {
+        return "e:" + email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private Stripe stripeFor(String key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    // count=false only checks the limit, without opening a window for the key
+    private long hit(String key, int limit, long now, boolean count) {
+        Stripe stripe = stripeFor(key);
+
+        synchronized (stripe) {
+            Window window = stripe.windows.get(key);
+
+            if (window == null || now - window.start >= windowMillis) {
+                if (!count) {
+                    return 0;
+                }
+                if (window == null && stripe.windows.size() >= MAX_KEYS_PER_STRIPE) {
+                    stripe.windows.values().removeIf(w -> now - w.start >= windowMillis);
+                }
+                window = new Window(now);
+                stripe.windows.put(key, window);
+            }
+
+            if (window.count >= limit) {
+                return Math.max(1, (window.start + windowMillis - now + 999) / 1000);
+            }
+            if (count) {
+                window.count++;
+            }
+            return 0;
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<String, Window> windows = new HashMap<>();
+    }
+
+    private static final class Window {
+        private final long start;
+        private int count;
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt on a dedicated pool sized to the cores with a bounded queue,
+ * so login storms can't take over the Tomcat request threads. When the queue
+ * is full callers fail fast with HashingBusyException instead of piling up.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final long RETRY_AFTER_SECONDS = 2;
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public PasswordHashingService(
+            PasswordEncoder encoder,
+            MeterRegistry registry,
+            @Value("${auth.hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${auth.hashing.timeout-ms:5000}") long timeoutMillis
+    ) {
+        this.encoder = encoder;
+        this.timeoutMillis = timeoutMillis;
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        this.queueWait = Timer.builder("auth.hash.queue.wait")
+                .description("Time a hashing job waits before a worker picks it up")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.rejected = Counter.builder("auth.hash.rejected")
+                .description("Hashing jobs rejected because the queue was full")
+                .register(registry);
+        Gauge.builder("auth.hash.queue.size", executor, e -> e.getQueue().size())
+                .register(registry);
+    }
+
+    public String encode(String rawPassword) {
+        return run(() -> encoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    private <T> T run(Callable<T> work) {
+        long enqueuedAt = System.nanoTime();
+
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                return work.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new HashingBusyException(RETRY_AFTER_SECONDS);
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HashingBusyException(RETRY_AFTER_SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new HashingBusyException(RETRY_AFTER_SECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.Task;
+import com.example.demo.models.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes score + Gemini explanation for a bid in the background and
+ * stores them on the bid, so the ranking screen only reads. The queue is
+ * bounded (a full queue drops the job, the read path re-enqueues later),
+ * a bid already waiting or running isn't queued twice, and jobs start at
+ * most {@code gemini.precompute.per-second} times a second. A run that
+ * got no Gemini text (no key, open breaker, error) is only retried after
+ * {@code gemini.precompute.retry-minutes}.
+ */
+@Service
+public class BidExplanationQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(BidExplanationQueue.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final BidRankingService rankingService;
+    private final GeminiService geminiService;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final long intervalNanos;
+    private final Duration callTimeout;
+    private final long retryMillis;
+
+    // Start time of the next job, guarded by this
+    private long nextSlot;
+
+    public BidExplanationQueue(
+            MongoTemplate mongoTemplate,
+            BidRankingService rankingService,
+            GeminiService geminiService,
+            @Value("${gemini.precompute.workers:2}") int workers,
+            @Value("${gemini.precompute.queue-capacity:1000}") int queueCapacity,
+            @Value("${gemini.precompute.per-second:5}") double perSecond,
+            @Value("${gemini.timeout-ms:8000}") long timeoutMs,
+            @Value("${gemini.precompute.retry-minutes:30}") long retryMinutes
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.rankingService = rankingService;
+        this.geminiService = geminiService;
+        this.intervalNanos = (long) (1_000_000_000L / perSecond);
+        this.callTimeout = Duration.ofMillis(timeoutMs * 2);
+        this.retryMillis = Duration.ofMinutes(retryMinutes).toMillis();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "bid-explainer-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    // False when the queue is full; the bid keeps its local explanation for now
+    public boolean enqueue(String bidId) {
+        if (!queued.add(bidId)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> process(bidId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.remove(bidId);
+            logger.warn("Explanation queue full, skipping bid {}", bidId);
+            return false;
+        }
+    }
+
+    // Missing explanation and never tried, or the last try is old enough to retry
+    public boolean isDue(Bid bid) {
+        if (bid.getAiExplanation() != null) {
+            return false;
+        }
+        Long attempted = bid.getAiExplainAttemptAt();
+        return attempted == null || System.currentTimeMillis() - attempted >= retryMillis;
+    }
+
+    public int size() {
+        return executor.getQueue().size();
+    }
+
+    private void process(String bidId) {
+        try {
+            pace();
+
+            Bid bid = mongoTemplate.findById(bidId, Bid.class);
+            if (bid == null || "REJECTED".equals(bid.getStatus())) {
+                return;
+            }
+            Task task = mongoTemplate.findById(bid.getTaskId(), Task.class);
+            User bidder = rankingService.loadBidders(List.of(bid.getBidderId())).get(bid.getBidderId());
+            if (task == null || bidder == null) {
+                return;
+            }
+
+            double score = rankingService.calculateScore(bidder, task, bid);
+            String explanation = geminiService.generateIfAvailable(bidder, task, bid, score)
+                    .block(callTimeout);
+
+            // Without Gemini the read path keeps using the local explanation
+            Update update = Update.update("aiScore", score)
+                    .set("aiExplainAttemptAt", System.currentTimeMillis());
+            if (explanation != null) {
+                update.set("aiExplanation", explanation);
+            }
+            // Only if no rescore landed meanwhile: its score (and its own explanation run) wins
+            long matched = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(bidId)
+                            .and("aiScore").is(bid.getAiScore())
+                            .and("aiExplanation").exists(false)),
+                    update, Bid.class).getMatchedCount();
+            if (matched == 0) {
+                logger.debug("Bid {} was rescored while explaining it, dropping the stale result", bidId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Precomputing explanation for bid {} failed: {}", bidId, e.getMessage());
+            markAttempted(bidId);
+        } finally {
+            // Only after the write, so a duplicate can't run while this one is sleeping or calling Gemini
+            queued.remove(bidId);
+        }
+    }
+
+    private void markAttempted(String bidId) {
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(bidId)),
+                    Update.update("aiExplainAttemptAt", System.currentTimeMillis()), Bid.class);
+        } catch (Exception e) {
+            logger.warn("Could not mark bid {} as attempted: {}", bidId, e.getMessage());
+        }
+    }
+
+    // Spaces job starts evenly across all workers
+    private void pace() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlot);
+            nextSlot = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,13 +1,176 @@
 package com.example.demo.services;
 
 import com.example.demo.models.Bid;
+import com.example.demo.models.RankedBid;
 import com.example.demo.models.Task;
 import com.example.demo.models.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
 @Service
 public class BidRankingService {
 
+    // Below this, fork/join overhead costs more than the scoring itself
+    static final int PARALLEL_THRESHOLD = 2048;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Top bids in score order with their bidders, nothing explained yet.
+     * Bids already carry a stored aiScore, so this is one indexed
+     * (taskId, aiScore) query for the top {@code limit} (all when null)
+     * plus one query for those bidders.
+     */
+    public List<ScoredBid> topBids(Task task, Integer limit) {
+        // Bids placed before scores were stored
+        rescore(Query.query(Criteria.where("taskId").is(task.getId())
+                .and("status").ne("REJECTED")
+                .and("aiScore").exists(false)));
+
+        Query query = Query.query(Criteria.where("taskId").is(task.getId()).and("status").ne("REJECTED"))
+                .with(Sort.by(Sort.Order.desc("aiScore"), Sort.Order.asc("_id")));
+        if (limit != null) {
+            query.limit(limit);
+        }
+        List<Bid> top = mongoTemplate.find(query, Bid.class);
+
+        Set<String> bidderIds = new HashSet<>();
+        for (Bid bid : top) {
+            bidderIds.add(bid.getBidderId());
+        }
+        Map<String, User> bidders = loadBidders(bidderIds);
+
+        List<ScoredBid> scored = new ArrayList<>(top.size());
+        for (Bid bid : top) {
+            User user = bidders.get(bid.getBidderId());
+            if (user != null && bid.getAiScore() != null) {
+                scored.add(new ScoredBid(bid, user, bid.getAiScore()));
+            }
+        }
+        return scored;
+    }
+
+    public RankedBid toRanked(ScoredBid scored, String reason) {
+        double score = scored.score();
+        return new RankedBid(
+                scored.bid().getId(),
+                scored.bid().getBidAmount(),
+                score,
+                reason,
+                scored.bidder().getName(),
+                scored.bidder().getRating(),
+                Math.min(100, Math.round(score * 4))
+        );
+    }
+
+    // Score for a bid about to be placed, null if the bidder is gone
+    public Double score(Task task, Bid bid) {
+        User user = loadBidders(List.of(bid.getBidderId())).get(bid.getBidderId());
+        return user == null ? null : calculateScore(user, task, bid);
+    }
+
+    // Bidder's rating, experience, skills or location changed
+    public void refreshBidder(String userId) {
+        rescore(Query.query(Criteria.where("bidderId").is(userId).and("status").ne("REJECTED")));
+    }
+
+    // Task budget or location changed
+    public void refreshTask(String taskId) {
+        rescore(Query.query(Criteria.where("taskId").is(taskId).and("status").ne("REJECTED")));
+    }
+
+    // Recomputes and stores aiScore for the matching bids with one bulk write
+    private void rescore(Query bidQuery) {
+        bidQuery.fields().include("taskId", "bidderId", "bidAmount");
+        List<Bid> bids = mongoTemplate.find(bidQuery, Bid.class);
+        if (bids.isEmpty()) {
+            return;
+        }
+
+        Set<String> taskIds = new HashSet<>();
+        Set<String> bidderIds = new HashSet<>();
+        for (Bid bid : bids) {
+            taskIds.add(bid.getTaskId());
+            bidderIds.add(bid.getBidderId());
+        }
+
+        Query taskQuery = Query.query(Criteria.where("_id").in(taskIds));
+        taskQuery.fields().include("budget", "requiredSkills", "location");
+        Map<String, Task> tasks = new HashMap<>();
+        for (Task task : mongoTemplate.find(taskQuery, Task.class)) {
+            tasks.put(task.getId(), task);
+        }
+        Map<String, User> bidders = loadBidders(bidderIds);
+
+        // Group by task so each group is scored as one batch
+        Map<String, List<Bid>> bidsByTask = new HashMap<>();
+        Map<String, List<User>> usersByTask = new HashMap<>();
+        for (Bid bid : bids) {
+            User user = bidders.get(bid.getBidderId());
+            if (user == null || !tasks.containsKey(bid.getTaskId())) {
+                continue;
+            }
+            bidsByTask.computeIfAbsent(bid.getTaskId(), id -> new ArrayList<>()).add(bid);
+            usersByTask.computeIfAbsent(bid.getTaskId(), id -> new ArrayList<>()).add(user);
+        }
+        if (bidsByTask.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Bid.class);
+        for (Map.Entry<String, List<Bid>> group : bidsByTask.entrySet()) {
+            List<Bid> taskBids = group.getValue();
+            double[] scores = scoreBatch(tasks.get(group.getKey()), taskBids, usersByTask.get(group.getKey()));
+            for (int i = 0; i < scores.length; i++) {
+                // The stored explanation described the old score, an unchanged score keeps it
+                bulk.updateOne(Query.query(Criteria.where("_id").is(taskBids.get(i).getId())
+                                .and("aiScore").ne(scores[i])),
+                        Update.update("aiScore", scores[i]).unset("aiExplanation").unset("aiExplainAttemptAt"));
+            }
+        }
+        bulk.execute();
+    }
+
+    // Same results as calculateScore per bid, users.get(i) placed bids.get(i)
+    double[] scoreBatch(Task task, List<Bid> bids, List<User> users) {
+        BidScoringKernel kernel = new BidScoringKernel(task, bids, users);
+        double[] scores = new double[kernel.size()];
+        if (scores.length >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, scores.length).parallel().forEach(i -> scores[i] = kernel.score(i));
+        } else {
+            kernel.scoreAll(scores);
+        }
+        return scores;
+    }
+
+    // Only the fields calculateScore and explain read
+    public Map<String, User> loadBidders(Collection<String> bidderIds) {
+        Query query = Query.query(Criteria.where("_id").in(bidderIds));
+        query.fields().include("name", "rating", "skills", "tasksCompleted", "location");
+
+        Map<String, User> bidders = new HashMap<>();
+        for (User user : mongoTemplate.find(query, User.class)) {
+            bidders.put(user.getId(), user);
+        }
+        return bidders;
+    }
+
     public double calculateScore(User user, Task task, Bid bid) {
 
         double score = 0;
@@ -60,4 +223,51 @@ public class BidRankingService {
 
         return Math.round(score * 100.0) / 100.0;
     }
+
+    // ================== LOCAL AI LOGIC ==================
+
+    public String explain(User user, Task task, Bid bid, double score) {
+
+        List<String> reasons = new ArrayList<>();
+
+        // 💰 Price logic
+        if (bid.getBidAmount() <= task.getBudget()) {
+            reasons.add("Bid price fits within the task budget");
+        } else {
+            reasons.add("Bid price exceeds the task budget");
+        }
+
+        // ⭐ Rating logic
+        if (user.getRating() >= 4.5) {
+            reasons.add("Tasker has an excellent rating");
+        } else if (user.getRating() >= 3.5) {
+            reasons.add("Tasker has a good rating");
+        } else if (user.getRating() > 0) {
+            reasons.add("Tasker has a low rating");
+        } else {
+            reasons.add("Tasker is new with no ratings");
+        }
+
+        // 🧠 Experience logic
+        if (user.getTasksCompleted() >= 20) {
+            reasons.add("Highly experienced with many completed tasks");
+        } else if (user.getTasksCompleted() >= 5) {
+            reasons.add("Moderate task experience");
+        } else if (user.getTasksCompleted() > 0) {
+            reasons.add("Limited task experience");
+        } else {
+            reasons.add("No completed tasks yet");
+        }
+
+        // 🎯 Final verdict
+        if (score >= 20) {
+            reasons.add("Overall this bid is highly recommended");
+        } else if (score >= 12) {
+            reasons.add("This bid is a good option");
+        } else {
+            reasons.add("This bid is less suitable compared to others");
+        }
+
+        return String.join(". ", reasons) + ".";
+    }
 }
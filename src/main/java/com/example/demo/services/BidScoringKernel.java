@@ -0,0 +1,142 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.Task;
+import com.example.demo.models.User;
+
+import java.util.List;
+
+/**
+ * calculateScore over a batch of bids for one task, laid out as primitive
+ * arrays. Required skills are a bitset, each bidder's skills a run of ids
+ * in one flat array, so scoring a bid allocates nothing.
+ *
+ * Produces exactly the scores of {@link BidRankingService#calculateScore}:
+ * same operations in the same order, duplicate user skills each count,
+ * and the denominator is requiredSkills.size() including duplicates.
+ */
+final class BidScoringKernel {
+
+    // Task
+    private final double budget;
+    private final boolean hasRequiredSkills;
+    private final long[] requiredBits;
+    private final int requiredCount;
+    private final boolean taskHasLocation;
+    private final double taskLat;
+    private final double taskLng;
+
+    // One slot per bid
+    private final int size;
+    private final double[] rating;
+    private final double[] bidAmount;
+    private final int[] tasksCompleted;
+    private final boolean[] hasSkills;
+    private final int[] skillStart;
+    private final int[] skillIds;
+    private final boolean[] hasLocation;
+    private final double[] lat;
+    private final double[] lng;
+
+    // users.get(i) placed bids.get(i)
+    BidScoringKernel(Task task, List<Bid> bids, List<User> users) {
+        // Ids local to this batch, so they never grow past the task's own skill list
+        SkillDictionary skills = new SkillDictionary();
+        List<String> required = task.getRequiredSkills();
+        budget = task.getBudget();
+        hasRequiredSkills = required != null && !required.isEmpty();
+        requiredBits = hasRequiredSkills ? skills.bitsOf(required) : new long[0];
+        requiredCount = hasRequiredSkills ? required.size() : 0;
+        taskHasLocation = task.getLocation() != null;
+        taskLat = taskHasLocation ? task.getLocation().getLat() : 0;
+        taskLng = taskHasLocation ? task.getLocation().getLng() : 0;
+
+        size = bids.size();
+        rating = new double[size];
+        bidAmount = new double[size];
+        tasksCompleted = new int[size];
+        hasSkills = new boolean[size];
+        skillStart = new int[size + 1];
+        hasLocation = new boolean[size];
+        lat = new double[size];
+        lng = new double[size];
+
+        int totalSkills = 0;
+        for (User user : users) {
+            if (user.getSkills() != null) {
+                totalSkills += user.getSkills().size();
+            }
+        }
+        skillIds = new int[totalSkills];
+
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            User user = users.get(i);
+            rating[i] = user.getRating();
+            bidAmount[i] = bids.get(i).getBidAmount();
+            tasksCompleted[i] = user.getTasksCompleted();
+
+            skillStart[i] = next;
+            hasSkills[i] = user.getSkills() != null;
+            if (hasSkills[i]) {
+                for (String skill : user.getSkills()) {
+                    skillIds[next++] = skills.idOf(skill);
+                }
+            }
+
+            hasLocation[i] = user.getLocation() != null;
+            if (hasLocation[i]) {
+                lat[i] = user.getLocation().getLat();
+                lng[i] = user.getLocation().getLng();
+            }
+        }
+        skillStart[size] = next;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double score(int i) {
+
+        double score = 0;
+
+        score += (rating[i] / 5.0) * 30;
+
+        if (hasSkills[i] && hasRequiredSkills) {
+            int matchedSkills = 0;
+            for (int j = skillStart[i], end = skillStart[i + 1]; j < end; j++) {
+                int id = skillIds[j];
+                int word = id >>> 6;
+                if (id >= 0 && word < requiredBits.length && (requiredBits[word] & (1L << id)) != 0) {
+                    matchedSkills++;
+                }
+            }
+            double skillMatchRatio = (double) matchedSkills / requiredCount;
+            score += skillMatchRatio * 25;
+        }
+
+        if (bidAmount[i] > 0) {
+            double priceRatio = budget / bidAmount[i];
+            score += Math.min(priceRatio, 1.2) * 20;
+        }
+
+        score += Math.min(tasksCompleted[i], 20) * 0.75;
+
+        if (hasLocation[i] && taskHasLocation) {
+            double latDiff = Math.abs(lat[i] - taskLat);
+            double lngDiff = Math.abs(lng[i] - taskLng);
+            if (latDiff < 0.1 && lngDiff < 0.1) {
+                score += 10;
+            }
+        }
+
+        return Math.round(score * 100.0) / 100.0;
+    }
+
+    void scoreAll(double[] out) {
+        for (int i = 0; i < size; i++) {
+            out[i] = score(i);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.services;
+
+/**
+ * Minimal consecutive-failure circuit breaker for an external API.
+ * CLOSED: calls go through, {@code failureThreshold} failures in a row open it.
+ * OPEN: calls are refused until {@code openNanos} have passed.
+ * HALF_OPEN: one trial call; success closes it, failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    // False means skip the call and use the fallback
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+        trialInFlight = false;
+    }
+
+    // Call finished without telling us anything about the remote (e.g. a 400)
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+}
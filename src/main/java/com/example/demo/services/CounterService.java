@@ -0,0 +1,48 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Task;
+import com.example.demo.models.User;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/**
+ * Targeted $inc updates for denormalized counters, instead of loading and
+ * re-saving the whole document (which also loses increments under load).
+ */
+@Service
+public class CounterService {
+
+    private final MongoTemplate mongoTemplate;
+
+    public CounterService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public void incrementBidCount(String taskId) {
+        mongoTemplate.updateFirst(byId(taskId), new Update().inc("bidCount", 1), Task.class);
+    }
+
+    // Never goes below zero
+    public void decrementBidCount(String taskId) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(taskId).and("bidCount").gt(0)),
+                new Update().inc("bidCount", -1),
+                Task.class
+        );
+    }
+
+    public void incrementTasksPosted(String userId) {
+        mongoTemplate.updateFirst(byId(userId), new Update().inc("tasksPosted", 1), User.class);
+    }
+
+    public void incrementTasksCompleted(String userId) {
+        mongoTemplate.updateFirst(byId(userId), new Update().inc("tasksCompleted", 1), User.class);
+    }
+
+    private static Query byId(String id) {
+        return Query.query(Criteria.where("_id").is(id));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.services;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing. The cursor is an opaque token
+ * holding the (sortValue, _id) of the last item, pages are newest first.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    public static int clampLimit(Integer limit) {
+        if (limit == null || limit <= 0) return DEFAULT_LIMIT;
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    public static String encode(String sortValue, String id) {
+        String raw = (sortValue == null ? "" : sortValue) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Criteria matching everything strictly after the cursor for a
+     * (sortField desc, _id desc) ordering. Null cursor means first page.
+     */
+    public static Criteria after(String cursor, String sortField) {
+        if (cursor == null || cursor.isBlank()) return null;
+
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        int sep = raw.lastIndexOf('|');
+        if (sep < 0 || sep == raw.length() - 1) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        String sortValue = raw.substring(0, sep);
+        Object id = toId(raw.substring(sep + 1));
+
+        return new Criteria().orOperator(
+                Criteria.where(sortField).lt(sortValue),
+                Criteria.where(sortField).is(sortValue).and("_id").lt(id)
+        );
+    }
+
+    // Fetch limit + 1 rows and pass them here to find out whether there is a next page
+    public static <T> CursorPage<T> of(List<T> rows, int limit,
+                                       Function<T, String> sortValue,
+                                       Function<T, String> id) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        T last = items.get(limit - 1);
+        return new CursorPage<>(items, encode(sortValue.apply(last), id.apply(last)));
+    }
+
+    private static Object toId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.demo.services;
+
+import com.example.demo.models.CachedExplanation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * Gemini explanations keyed by {@link ExplanationFeatures#key()}. An LRU
+ * map in front, optionally backed by a Mongo collection with a TTL index so
+ * answers survive restarts. Hit/miss counters are under
+ * ai.explanation.cache{result=memory|mongo|miss}.
+ */
+@Service
+public class ExplanationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExplanationCache.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean mongoEnabled;
+    private final Duration ttl;
+    private final LruCache<String, String> memory;
+
+    private final Counter memoryHits;
+    private final Counter mongoHits;
+    private final Counter misses;
+
+    public ExplanationCache(
+            MongoTemplate mongoTemplate,
+            MeterRegistry registry,
+            @Value("${gemini.cache.max-entries:5000}") int maxEntries,
+            @Value("${gemini.cache.mongo.enabled:true}") boolean mongoEnabled,
+            @Value("${gemini.cache.ttl-hours:168}") long ttlHours
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.mongoEnabled = mongoEnabled;
+        this.ttl = Duration.ofHours(ttlHours);
+
+        this.memory = new LruCache<>(maxEntries);
+
+        this.memoryHits = Counter.builder("ai.explanation.cache").tag("result", "memory").register(registry);
+        this.mongoHits = Counter.builder("ai.explanation.cache").tag("result", "mongo").register(registry);
+        this.misses = Counter.builder("ai.explanation.cache").tag("result", "miss").register(registry);
+        Gauge.builder("ai.explanation.cache.size", memory, LruCache::size)
+                .register(registry);
+    }
+
+    // Empty on a miss
+    public Mono<String> get(String key) {
+        String cached = memory.get(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return Mono.just(cached);
+        }
+        if (!mongoEnabled) {
+            misses.increment();
+            return Mono.empty();
+        }
+
+        // MongoTemplate blocks, keep it off the caller's thread
+        return Mono.fromCallable(() -> mongoTemplate.findById(key, CachedExplanation.class))
+                .subscribeOn(Schedulers.boundedElastic())
+                .filter(entry -> entry.getExpiresAt() == null || entry.getExpiresAt().after(new Date()))
+                .map(entry -> {
+                    mongoHits.increment();
+                    memory.put(key, entry.getText());
+                    return entry.getText();
+                })
+                .onErrorResume(e -> {
+                    logger.warn("Explanation cache lookup failed: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.fromRunnable(misses::increment));
+    }
+
+    public void put(String key, String text) {
+        memory.put(key, text);
+        if (!mongoEnabled) {
+            return;
+        }
+
+        CachedExplanation entry = new CachedExplanation();
+        entry.setKey(key);
+        entry.setText(text);
+        entry.setExpiresAt(new Date(System.currentTimeMillis() + ttl.toMillis()));
+
+        // Fire and forget, the memory tier already has it
+        Mono.fromRunnable(() -> mongoTemplate.save(entry))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> logger.warn("Explanation cache write failed: {}", e.getMessage()));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.Task;
+import com.example.demo.models.User;
+
+import java.util.List;
+
+/**
+ * The inputs of a bid explanation rounded into coarse buckets. Bids with the
+ * same buckets get the same prompt, so one Gemini answer can be reused for
+ * all of them. -1 means "not applicable" (no skills listed, no price).
+ */
+public record ExplanationFeatures(
+        int ratingBucket,     // half stars, 0..10
+        int skillBucket,      // tenths of required skills matched, 0..10
+        int priceBucket,      // bid as tenths of the budget, 0..30
+        int experienceBucket, // 0 / 1-4 / 5-9 / 10-19 / 20+
+        int scoreBucket       // score rounded to a whole number
+) {
+
+    private static final String[] EXPERIENCE = {"none yet", "1-4 tasks", "5-9 tasks", "10-19 tasks", "20 or more tasks"};
+
+    public static ExplanationFeatures of(User user, Task task, Bid bid, double score) {
+        int rating = (int) Math.round(Math.max(0, Math.min(5, user.getRating())) * 2);
+
+        // Same ratio as calculateScore
+        int skills = -1;
+        List<String> required = task.getRequiredSkills();
+        if (user.getSkills() != null && required != null && !required.isEmpty()) {
+            long matched = user.getSkills().stream().filter(required::contains).count();
+            skills = (int) Math.min(10, Math.round(matched * 10.0 / required.size()));
+        }
+
+        int price = -1;
+        if (bid.getBidAmount() > 0 && task.getBudget() > 0) {
+            price = (int) Math.min(30, Math.round(bid.getBidAmount() * 10 / task.getBudget()));
+        }
+
+        int completed = user.getTasksCompleted();
+        int experience = completed <= 0 ? 0 : completed < 5 ? 1 : completed < 10 ? 2 : completed < 20 ? 3 : 4;
+
+        return new ExplanationFeatures(rating, skills, price, experience, (int) Math.round(score));
+    }
+
+    public String key() {
+        return "r" + ratingBucket + "|s" + skillBucket + "|p" + priceBucket
+                + "|e" + experienceBucket + "|c" + scoreBucket;
+    }
+
+    // Built only from the buckets, so a cached answer fits every bid with this key
+    public String prompt() {
+        return String.format(
+            "Explain in simple language why this bid is ranked with a score of about %d.\n\n" +
+            "%s\n" +
+            "Give a short, friendly explanation (1-2 lines).",
+            scoreBucket,
+            details()
+        );
+    }
+
+    // One line per feature, shared with the batched prompt
+    public String details() {
+        return String.format(
+            "Tasker rating: %s\n" +
+            "Required skills the tasker has: %s\n" +
+            "Bid amount: %s\n" +
+            "Tasks completed: %s\n",
+            ratingBucket == 0 ? "no ratings yet" : String.format("about %.1f out of 5", ratingBucket / 2.0),
+            skillBucket < 0 ? "not specified" : String.format("about %d%%", skillBucket * 10),
+            priceBucket < 0 ? "not specified" : String.format("about %d%% of the task budget", priceBucket * 10),
+            EXPERIENCE[experienceBucket]
+        );
+    }
+}
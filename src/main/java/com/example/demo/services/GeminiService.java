@@ -3,30 +3,78 @@ package com.example.demo.services;
 import com.example.demo.models.Bid;
 import com.example.demo.models.Task;
 import com.example.demo.models.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Gemini calls without blocking a servlet thread. Every call has a
+ * deadline, at most {@code gemini.max-in-flight} run at once, and a circuit
+ * breaker stops calling after a streak of 429/5xx/timeouts. In all those
+ * cases callers get the local explanation instead.
+ */
 @Service
 public class GeminiService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeminiService.class);
 
+    // Per-bid fallback calls for one batch run at most this many at once
+    private static final int INDIVIDUAL_CONCURRENCY = 4;
+
+    private static final String GENERATE_PATH = "/v1beta/models/gemini-1.5-flash:generateContent?key={key}";
+    private static final String STREAM_PATH = "/v1beta/models/gemini-1.5-flash:streamGenerateContent?alt=sse&key={key}";
+
     private final WebClient webClient;
     private final String apiKey;
+    private final BidRankingService rankingService;
+    private final ExplanationCache cache;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final Duration timeout;
+    private final Semaphore inFlight;
+    private final CircuitBreaker breaker;
 
-    public GeminiService(WebClient.Builder builder, @Value("${gemini.api.key}") String geminiKey) {
+    public GeminiService(WebClient.Builder builder,
+                         BidRankingService rankingService,
+                         ExplanationCache cache,
+                         ObjectMapper objectMapper,
+                         @Value("${gemini.api.key}") String geminiKey,
+                         @Value("${gemini.base-url:https://generativelanguage.googleapis.com}") String baseUrl,
+                         @Value("${gemini.timeout-ms:8000}") long timeoutMs,
+                         @Value("${gemini.max-in-flight:16}") int maxInFlight,
+                         @Value("${gemini.breaker.failure-threshold:5}") int failureThreshold,
+                         @Value("${gemini.breaker.open-seconds:30}") long openSeconds,
+                         @Value("${gemini.batch.max-bids:20}") int batchSize) {
         this.webClient = builder
-                .baseUrl("https://generativelanguage.googleapis.com")
+                .baseUrl(baseUrl)
                 .build();
         this.apiKey = geminiKey;
-        
+        this.rankingService = rankingService;
+        this.cache = cache;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.breaker = new CircuitBreaker(failureThreshold, openSeconds * 1000);
+
         // Log API key status on startup
         if (apiKey != null && !apiKey.isEmpty()) {
             logger.info("✓ Gemini API Key loaded successfully");
@@ -35,112 +83,361 @@ public class GeminiService {
         }
     }
 
-    public String generateExplanation(User user, Task task, Bid bid, double score) {
+    // Never errors: falls back to the local explanation
+    public Mono<String> generateExplanation(User user, Task task, Bid bid, double score) {
+        return generateIfAvailable(user, task, bid, score)
+                .switchIfEmpty(Mono.fromSupplier(() -> rankingService.explain(user, task, bid, score)));
+    }
 
-        // Check if API key is available
-        if (apiKey == null || apiKey.isEmpty()) {
-            logger.error("Gemini API key is not configured");
-            return "AI explanation unavailable at the moment.";
+    // Cached or fresh Gemini answer, empty when Gemini can't be used right now
+    public Mono<String> generateIfAvailable(User user, Task task, Bid bid, double score) {
+        ExplanationFeatures features = ExplanationFeatures.of(user, task, bid, score);
+        String key = features.key();
+
+        // Only real Gemini answers are cached, never the fallback
+        return cache.get(key)
+                .switchIfEmpty(Mono.defer(() -> generate(features.prompt(), false)
+                        .doOnNext(text -> cache.put(key, text))));
+    }
+
+    /**
+     * Explanations for many bids of one task, keyed by bid id. Explanations
+     * already stored on a bid are used as is. Bids with the same features
+     * share one answer, cached ones are reused, and the rest
+     * go to Gemini {@code gemini.batch.max-bids} at a time in one JSON-mode
+     * prompt each. Anything a batch reply doesn't cover is asked for one by
+     * one; whatever is still missing gets the local explanation.
+     */
+    public Mono<Map<String, String>> explainAll(Task task, List<ScoredBid> bids) {
+        Map<String, ExplanationFeatures> byKey = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>(bids.size());
+        for (ScoredBid scored : bids) {
+            // Precomputed on placement, nothing to ask
+            if (scored.bid().getAiExplanation() != null) {
+                keys.add(null);
+                continue;
+            }
+            ExplanationFeatures features = ExplanationFeatures.of(scored.bidder(), task, scored.bid(), scored.score());
+            byKey.putIfAbsent(features.key(), features);
+            keys.add(features.key());
         }
 
-        String prompt = String.format(
-            "Explain in simple language why this bid is ranked with score %.2f.\n\n" +
-            "User rating: %s\n" +
-            "User skills: %s\n" +
-            "Task required skills: %s\n" +
-            "Bid amount: %s\n" +
-            "Task budget: %s\n" +
-            "Tasks completed: %s\n\n" +
-            "Give a short, friendly explanation (1-2 lines).",
-            score,
-            user.getRating(),
-            user.getSkills(),
-            task.getRequiredSkills(),
-            bid.getBidAmount(),
-            task.getBudget(),
-            user.getTasksCompleted()
-        );
-
-        Map<String, Object> requestBody = Map.of(
-                "contents", List.of(
-                        Map.of(
-                                "parts", List.of(
-                                        Map.of("text", prompt)
-                                )
-                        )
-                )
-        );
+        return Flux.fromIterable(byKey.keySet())
+                .flatMap(key -> cache.get(key).map(text -> Map.entry(key, text)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(cached -> {
+                    List<ExplanationFeatures> missing = new ArrayList<>();
+                    for (ExplanationFeatures features : byKey.values()) {
+                        if (!cached.containsKey(features.key())) {
+                            missing.add(features);
+                        }
+                    }
+
+                    List<List<ExplanationFeatures>> batches = new ArrayList<>();
+                    for (int i = 0; i < missing.size(); i += batchSize) {
+                        batches.add(missing.subList(i, Math.min(i + batchSize, missing.size())));
+                    }
+
+                    return Flux.fromIterable(batches)
+                            .flatMap(this::generateBatch)
+                            .reduce(new HashMap<>(cached), (all, batch) -> {
+                                all.putAll(batch);
+                                return all;
+                            });
+                })
+                .map(texts -> {
+                    Map<String, String> byBid = new LinkedHashMap<>();
+                    for (int i = 0; i < bids.size(); i++) {
+                        ScoredBid scored = bids.get(i);
+                        String text = keys.get(i) == null ? scored.bid().getAiExplanation() : texts.get(keys.get(i));
+                        if (text == null) {
+                            text = rankingService.explain(scored.bidder(), task, scored.bid(), scored.score());
+                        }
+                        byBid.put(scored.bid().getId(), text);
+                    }
+                    return byBid;
+                });
+    }
+
+    // Feature key -> text for one batch, possibly partial
+    private Mono<Map<String, String>> generateBatch(List<ExplanationFeatures> batch) {
+        if (batch.size() == 1) {
+            return generateEach(batch);
+        }
+
+        StringBuilder prompt = new StringBuilder(
+            "For each tasker bid below, explain in simple language why it got its ranking score.\n" +
+            "Give a short, friendly explanation (1-2 lines) per bid.\n" +
+            "Respond with only a JSON array of objects {\"id\": <bid id>, \"explanation\": <text>}, one per bid.\n\n");
+        for (int i = 0; i < batch.size(); i++) {
+            prompt.append("Bid ").append(i + 1).append(":\n")
+                    .append("Score: about ").append(batch.get(i).scoreBucket()).append('\n')
+                    .append(batch.get(i).details()).append('\n');
+        }
 
+        // Empty when Gemini is unavailable: don't retry bid by bid then
+        return generate(prompt.toString(), true)
+                .flatMap(text -> {
+                    Map<String, String> texts = new HashMap<>();
+                    Map<Integer, String> parsed = parseBatch(text);
+                    List<ExplanationFeatures> unanswered = new ArrayList<>();
+                    for (int i = 0; i < batch.size(); i++) {
+                        String explanation = parsed.get(i + 1);
+                        if (explanation != null) {
+                            texts.put(batch.get(i).key(), explanation);
+                            cache.put(batch.get(i).key(), explanation);
+                        } else {
+                            unanswered.add(batch.get(i));
+                        }
+                    }
+                    if (unanswered.isEmpty()) {
+                        return Mono.just(texts);
+                    }
+
+                    logger.warn("Gemini batch reply covered {} of {} bids, asking for the rest one by one",
+                            texts.size(), batch.size());
+                    return generateEach(unanswered).map(rest -> {
+                        texts.putAll(rest);
+                        return texts;
+                    });
+                })
+                .defaultIfEmpty(Map.of());
+    }
+
+    private Mono<Map<String, String>> generateEach(List<ExplanationFeatures> features) {
+        return Flux.fromIterable(features)
+                .flatMap(f -> generate(f.prompt(), false)
+                        .doOnNext(text -> cache.put(f.key(), text))
+                        .map(text -> Map.entry(f.key(), text)), INDIVIDUAL_CONCURRENCY)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    // Bid number -> explanation; empty when the reply isn't the JSON we asked for
+    private Map<Integer, String> parseBatch(String text) {
+        Map<Integer, String> parsed = new HashMap<>();
         try {
-            logger.info("Calling Gemini API for bid explanation...");
-            
-            Map response = webClient.post()
-                .uri("/v1beta/models/gemini-1.5-flash:generateContent?key=" + apiKey)
-                .header("Content-Type", "application/json")
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block();
-
-            if (response == null) {
-                logger.error("Gemini API returned null response");
-                return "AI explanation unavailable at the moment.";
+            String json = text.strip();
+            // Sometimes wrapped in a ```json fence despite the mime type
+            if (json.startsWith("```")) {
+                json = json.substring(json.indexOf('\n') + 1, json.lastIndexOf("```"));
             }
 
-            logger.info("Gemini API response received: {}", response.keySet());
-
-            // Check for errors
-            if (response.containsKey("error")) {
-                Map error = (Map) response.get("error");
-                logger.error("Gemini API error: {}", error);
-                
-                String errorMessage = error.get("message") != null ? 
-                    error.get("message").toString() : "Unknown error";
-                logger.error("Error message: {}", errorMessage);
-                
-                return "AI explanation unavailable at the moment.";
+            JsonNode root = objectMapper.readTree(json);
+            if (!root.isArray()) {
+                logger.error("Gemini batch reply is not a JSON array: {}", text);
+                return parsed;
             }
+            for (JsonNode item : root) {
+                JsonNode id = item.get("id");
+                JsonNode explanation = item.get("explanation");
+                if (id == null || explanation == null || !explanation.isTextual() || explanation.asText().isBlank()) {
+                    continue;
+                }
+                // "1", 1 or "Bid 1"
+                String number = id.asText().replaceAll("\\D", "");
+                if (!number.isEmpty()) {
+                    parsed.put(Integer.parseInt(number), explanation.asText().strip());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Malformed Gemini batch reply: {}", e.getMessage());
+        }
+        return parsed;
+    }
+
+    /**
+     * Explanation as server-sent events while Gemini generates it:
+     * "token" events carry text chunks, a "fallback" event carries the
+     * local explanation to show instead (Gemini unavailable or failed
+     * mid-stream), and "done" ends the stream. A cached answer arrives as a
+     * single token.
+     */
+    public Flux<ServerSentEvent<String>> streamExplanation(User user, Task task, Bid bid, double score) {
+        ExplanationFeatures features = ExplanationFeatures.of(user, task, bid, score);
+        String key = features.key();
+
+        Flux<ServerSentEvent<String>> fallback = Flux.defer(() -> Flux.just(
+                ServerSentEvent.builder(rankingService.explain(user, task, bid, score)).event("fallback").build()));
+
+        Flux<ServerSentEvent<String>> live = Flux.defer(() -> {
+            StringBuilder full = new StringBuilder();
+            return stream(features.prompt())
+                    .doOnNext(full::append)
+                    .doOnComplete(() -> {
+                        if (full.length() > 0) {
+                            cache.put(key, full.toString());
+                        }
+                    })
+                    .map(token -> ServerSentEvent.builder(token).event("token").build());
+        });
+
+        return cache.get(key)
+                .map(text -> ServerSentEvent.builder(text).event("token").build())
+                .flux()
+                .switchIfEmpty(live.switchIfEmpty(fallback))
+                .onErrorResume(e -> fallback)
+                .concatWith(Flux.just(ServerSentEvent.builder("").event("done").build()));
+    }
+
+    // Text chunks from streamGenerateContent; empty when Gemini can't be used, errors on failure
+    private Flux<String> stream(String prompt) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return Flux.empty();
+        }
 
-            // Check for candidates
-            if (!response.containsKey("candidates")) {
-                logger.error("Gemini API response missing candidates. Response: {}", response);
-                return "AI explanation unavailable at the moment.";
+        return Flux.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return Flux.empty();
             }
+            if (!inFlight.tryAcquire()) {
+                breaker.onIgnored();
+                logger.warn("Gemini in-flight limit reached, using local explanation");
+                return Flux.empty();
+            }
+
+            // timeout() here is the longest gap between chunks
+            return webClient.post()
+                    .uri(STREAM_PATH, apiKey)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(requestBody(prompt, false))
+                    .retrieve()
+                    .bodyToFlux(Map.class)
+                    .timeout(timeout)
+                    .doOnComplete(breaker::onSuccess)
+                    .doOnError(this::recordFailure)
+                    // Client went away
+                    .doOnCancel(breaker::onIgnored)
+                    .doFinally(signal -> inFlight.release())
+                    .mapNotNull(GeminiService::chunkText);
+        });
+    }
 
-            // Extract the text response
-            List<?> candidates = (List<?>) response.get("candidates");
-            if (candidates.isEmpty()) {
-                logger.error("Gemini API returned empty candidates list");
-                return "AI explanation unavailable at the moment.";
+    // A stream chunk may carry no text (e.g. only the finish reason)
+    private static String chunkText(Map<?, ?> chunk) {
+        if (chunk.get("candidates") instanceof List<?> candidates && !candidates.isEmpty()
+                && candidates.get(0) instanceof Map<?, ?> candidate
+                && candidate.get("content") instanceof Map<?, ?> content
+                && content.get("parts") instanceof List<?> parts) {
+            StringBuilder text = new StringBuilder();
+            for (Object part : parts) {
+                if (part instanceof Map<?, ?> p && p.get("text") != null) {
+                    text.append(p.get("text"));
+                }
             }
+            return text.length() == 0 ? null : text.toString();
+        }
+        return null;
+    }
 
-            Map candidate = (Map) candidates.get(0);
-            Map content = (Map) candidate.get("content");
-            List<?> parts = (List<?>) content.get("parts");
-            Map part = (Map) parts.get(0);
-            String text = part.get("text").toString();
+    public CircuitBreaker.State breakerState() {
+        return breaker.state();
+    }
+
+    /**
+     * Text of the first candidate, or empty when there is no key, the
+     * breaker is open, too many calls are in flight, or the call failed.
+     */
+    Mono<String> generate(String prompt, boolean jsonOutput) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                logger.debug("Gemini circuit open, using local explanation");
+                return Mono.empty();
+            }
+            if (!inFlight.tryAcquire()) {
+                breaker.onIgnored();
+                logger.warn("Gemini in-flight limit reached, using local explanation");
+                return Mono.empty();
+            }
+
+            return webClient.post()
+                    .uri(GENERATE_PATH, apiKey)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(requestBody(prompt, jsonOutput))
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .timeout(timeout)
+                    .doOnSuccess(response -> breaker.onSuccess())
+                    .doOnError(this::recordFailure)
+                    .doOnCancel(breaker::onIgnored)
+                    .doFinally(signal -> inFlight.release())
+                    .mapNotNull(GeminiService::extractText)
+                    .onErrorResume(e -> Mono.empty());
+        });
+    }
+
+    private static Map<String, Object> requestBody(String prompt, boolean jsonOutput) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("contents", List.of(
+                Map.of(
+                        "parts", List.of(
+                                Map.of("text", prompt)
+                        )
+                )
+        ));
+        if (jsonOutput) {
+            requestBody.put("generationConfig", Map.of("responseMimeType", "application/json"));
+        }
+        return requestBody;
+    }
 
-            logger.info("✓ Successfully generated AI explanation");
-            return text;
+    // 429, 5xx, timeouts and connection errors count towards opening the breaker
+    private void recordFailure(Throwable e) {
+        if (e instanceof WebClientResponseException http) {
+            int status = http.getStatusCode().value();
+            logger.error("Gemini API HTTP error - Status: {}, Body: {}", status, http.getResponseBodyAsString());
 
-        } catch (WebClientResponseException e) {
-            logger.error("Gemini API HTTP error - Status: {}, Body: {}", 
-                e.getStatusCode(), e.getResponseBodyAsString());
-            
             // Specific error messages for common issues
-            if (e.getStatusCode().value() == 400) {
+            if (status == 400) {
                 logger.error("Bad request - check model name and request format");
-            } else if (e.getStatusCode().value() == 401) {
+            } else if (status == 401) {
                 logger.error("Unauthorized - check API key validity");
-            } else if (e.getStatusCode().value() == 429) {
+            } else if (status == 429) {
                 logger.error("Rate limit exceeded - too many requests");
             }
-            
-            return "AI explanation unavailable at the moment.";
-            
-        } catch (Exception e) {
+
+            if (status == 429 || status >= 500) {
+                breaker.onFailure();
+            } else {
+                breaker.onIgnored();
+            }
+        } else if (e instanceof TimeoutException) {
+            logger.warn("Gemini API did not answer within {} ms", timeout.toMillis());
+            breaker.onFailure();
+        } else {
             logger.error("Unexpected error calling Gemini API: {}", e.getMessage(), e);
-            return "AI explanation unavailable at the moment.";
+            breaker.onFailure();
+        }
+    }
+
+    private static String extractText(Map<?, ?> response) {
+
+        // Check for errors
+        if (response.containsKey("error")) {
+            logger.error("Gemini API error: {}", response.get("error"));
+            return null;
+        }
+
+        // Check for candidates
+        Object candidates = response.get("candidates");
+        if (!(candidates instanceof List<?> list) || list.isEmpty()) {
+            logger.error("Gemini API response missing candidates. Response: {}", response);
+            return null;
+        }
+
+        try {
+            Map<?, ?> candidate = (Map<?, ?>) list.get(0);
+            Map<?, ?> content = (Map<?, ?>) candidate.get("content");
+            List<?> parts = (List<?>) content.get("parts");
+            Map<?, ?> part = (Map<?, ?>) parts.get(0);
+            return part.get("text").toString();
+        } catch (RuntimeException e) {
+            logger.error("Unexpected Gemini response shape: {}", response);
+            return null;
         }
     }
-}
\ No newline at end of file
+}
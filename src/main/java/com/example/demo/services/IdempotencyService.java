@@ -0,0 +1,328 @@
+package com.example.demo.services;
+
+import com.example.demo.models.IdempotencyRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key support for endpoints that move money. The first request
+ * with a key claims it in the idempotency_keys collection (TTL indexed),
+ * runs, and its status + JSON body are stored and replayed to every retry
+ * with the same key. An LRU map in front serves repeat retries without a
+ * Mongo read, and concurrent duplicates on this instance wait on the first
+ * one's future instead of racing it. Counters are under
+ * idempotency.requests{result=executed|replayed|coalesced}.
+ *
+ * A claim carries an owner token and is renewed while its request runs, so
+ * another instance only takes a key over once the owner has stopped
+ * renewing (crashed). If the owner died after its wallet write but before
+ * storing the response, the retry runs the action again: across a crash
+ * the money movement is at-least-once, not exactly-once.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String DONE = "DONE";
+
+    // What gets replayed, fingerprint is null for responses that aren't tied to a request
+    record StoredResponse(String fingerprint, int status, String body) {}
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lock;
+    private final long waitMs;
+    private final LruCache<String, StoredResponse> memory;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "idempotency-renewer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter coalesced;
+
+    public IdempotencyService(
+            MongoTemplate mongoTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry registry,
+            @Value("${idempotency.ttl-hours:24}") long ttlHours,
+            @Value("${idempotency.lock-seconds:60}") long lockSeconds,
+            @Value("${idempotency.wait-ms:15000}") long waitMs,
+            @Value("${idempotency.cache.max-entries:10000}") int maxEntries
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.lock = Duration.ofSeconds(lockSeconds);
+        this.waitMs = waitMs;
+
+        this.memory = new LruCache<>(maxEntries);
+
+        this.executed = Counter.builder("idempotency.requests").tag("result", "executed").register(registry);
+        this.replayed = Counter.builder("idempotency.requests").tag("result", "replayed").register(registry);
+        this.coalesced = Counter.builder("idempotency.requests").tag("result", "coalesced").register(registry);
+    }
+
+    /**
+     * Runs action at most once per (endpoint, user, key). No key, or no
+     * user, just runs it. The fingerprint describes the request so a key
+     * reused for a different one is refused instead of replayed.
+     */
+    public ResponseEntity<?> execute(String endpoint, String userId, String key, String fingerprint,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank() || userId == null) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", HEADER + " must be at most " + MAX_KEY_LENGTH + " characters"));
+        }
+
+        String id = endpoint + ":" + userId + ":" + key;
+        String hash = sha256(fingerprint);
+
+        StoredResponse cached = memory.get(id);
+        if (cached != null) {
+            replayed.increment();
+            return replay(cached, hash);
+        }
+
+        // Concurrent duplicates on this instance wait for the first one
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            coalesced.increment();
+            return await(running, hash);
+        }
+
+        try {
+            return lead(id, hash, action, mine);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    private ResponseEntity<?> lead(String id, String hash, Supplier<ResponseEntity<?>> action,
+                                   CompletableFuture<StoredResponse> mine) {
+        String owner = UUID.randomUUID().toString();
+        IdempotencyRecord existing = claim(id, hash, owner);
+        if (existing != null) {
+            StoredResponse stored = DONE.equals(existing.getState())
+                    ? new StoredResponse(existing.getFingerprint(), existing.getStatus(), existing.getBody())
+                    : inProgress();
+            if (DONE.equals(existing.getState())) {
+                memory.put(id, stored);
+            }
+            mine.complete(stored);
+            replayed.increment();
+            return replay(stored, hash);
+        }
+
+        // Keep the claim alive while the action runs, a third of the lock apart
+        long every = Math.max(1, lock.toMillis() / 3);
+        ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(
+                () -> renew(id, owner), every, every, TimeUnit.MILLISECONDS);
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            renewal.cancel(false);
+            release(id, owner);
+            throw e;
+        }
+        renewal.cancel(false);
+        executed.increment();
+
+        String body = toJson(response.getBody());
+        StoredResponse stored = new StoredResponse(hash, response.getStatusCode().value(), body);
+
+        // Server errors aren't final, let a retry run again
+        if (body == null || response.getStatusCode().is5xxServerError()) {
+            release(id, owner);
+        } else if (complete(id, owner, stored)) {
+            memory.put(id, stored);
+        }
+
+        mine.complete(stored);
+        return response;
+    }
+
+    private ResponseEntity<?> await(CompletableFuture<StoredResponse> running, String hash) {
+        try {
+            return replay(running.get(waitMs, TimeUnit.MILLISECONDS), hash);
+        } catch (TimeoutException e) {
+            return replay(inProgress(), hash);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return replay(inProgress(), hash);
+        } catch (ExecutionException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", String.valueOf(e.getCause().getMessage())));
+        }
+    }
+
+    // Null when this request now owns the key, otherwise the record that holds it
+    private IdempotencyRecord claim(String id, String hash, String owner) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setKey(id);
+        record.setOwner(owner);
+        record.setFingerprint(hash);
+        record.setState(IN_PROGRESS);
+        record.setExpiresAt(new Date(System.currentTimeMillis() + lock.toMillis()));
+        try {
+            mongoTemplate.insert(record);
+            return null;
+        } catch (DuplicateKeyException e) {
+            // Take over a claim left behind by an instance that died mid-request (it stopped renewing)
+            IdempotencyRecord stale = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(id)
+                            .and("state").is(IN_PROGRESS)
+                            .and("expiresAt").lt(new Date())),
+                    new Update()
+                            .set("owner", owner)
+                            .set("fingerprint", hash)
+                            .set("expiresAt", record.getExpiresAt()),
+                    IdempotencyRecord.class
+            );
+            if (stale != null) {
+                return null;
+            }
+            IdempotencyRecord current = mongoTemplate.findById(id, IdempotencyRecord.class);
+            // Gone in between (TTL), try again
+            return current == null ? claim(id, hash, owner) : current;
+        }
+    }
+
+    // Only while this request still owns the claim, never recreates it
+    private boolean complete(String id, String owner, StoredResponse stored) {
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(id).and("owner").is(owner).and("state").is(IN_PROGRESS)),
+                new Update()
+                        .set("state", DONE)
+                        .set("status", stored.status())
+                        .set("body", stored.body())
+                        .set("expiresAt", new Date(System.currentTimeMillis() + ttl.toMillis())),
+                IdempotencyRecord.class
+        );
+        if (result.getMatchedCount() == 0) {
+            logger.warn("Idempotency key {} was taken over before its response could be stored", id);
+            return false;
+        }
+        return true;
+    }
+
+    private void renew(String id, String owner) {
+        try {
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(id).and("owner").is(owner).and("state").is(IN_PROGRESS)),
+                    Update.update("expiresAt", new Date(System.currentTimeMillis() + lock.toMillis())),
+                    IdempotencyRecord.class
+            );
+        } catch (Exception e) {
+            logger.warn("Could not renew idempotency key {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void release(String id, String owner) {
+        try {
+            mongoTemplate.remove(
+                    Query.query(Criteria.where("_id").is(id).and("owner").is(owner).and("state").is(IN_PROGRESS)),
+                    IdempotencyRecord.class);
+        } catch (Exception e) {
+            // The claim expires on its own after lock-seconds
+            logger.warn("Could not release idempotency key {}: {}", id, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String hash) {
+        if (stored.fingerprint() != null && !stored.fingerprint().equals(hash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(Map.of("error", HEADER + " was already used for a different request"));
+        }
+        try {
+            return ResponseEntity.status(stored.status())
+                .header(REPLAYED_HEADER, "true")
+                .body(objectMapper.readTree(stored.body()));
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Stored response could not be read"));
+        }
+    }
+
+    private StoredResponse inProgress() {
+        return new StoredResponse(null, HttpStatus.CONFLICT.value(),
+                "{\"error\":\"A request with this " + HEADER + " is still being processed\"}");
+    }
+
+    // Null if the body can't be stored, the key is released then
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not store idempotent response: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory map that drops the least recently used entry once it
+ * holds {@code maxEntries}: an access-ordered LinkedHashMap behind one lock.
+ * Callers that need expiry keep it in their values.
+ */
+public final class LruCache<K, V> {
+
+    private final Map<K, V> map;
+
+    public LruCache(int maxEntries) {
+        this.map = Collections.synchronizedMap(new LinkedHashMap<K, V>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    // Null on a miss
+    public V get(K key) {
+        return map.get(key);
+    }
+
+    public void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    // Only while it still maps to this value
+    public void remove(K key, V value) {
+        map.remove(key, value);
+    }
+
+    public int size() {
+        return map.size();
+    }
+}
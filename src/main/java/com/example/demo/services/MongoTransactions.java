@@ -0,0 +1,45 @@
+package com.example.demo.services;
+
+import com.mongodb.MongoException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Multi-document transaction helpers. Concurrent transactions on the same
+ * document abort with a transient write conflict instead of waiting; the
+ * driver labels those errors, so callers can re-run the whole unit or
+ * report a conflict.
+ */
+final class MongoTransactions {
+
+    private static final int MAX_ATTEMPTS = 8;
+
+    private MongoTransactions() {
+    }
+
+    static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof MongoException mongo && mongo.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Re-runs the whole transaction a few times with a little jitter before giving up
+    static <T> T execute(TransactionTemplate transactions, Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactions.execute(status -> work.get());
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(100_000L, 1_000_000L * attempt));
+            }
+        }
+    }
+}
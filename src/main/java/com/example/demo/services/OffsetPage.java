@@ -0,0 +1,44 @@
+package com.example.demo.services;
+
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+/**
+ * One page of a skip/limit listing, for searches sorted by something a
+ * cursor can't hold (text score). Pages are capped at {@link #MAX_PAGE}.
+ */
+public record OffsetPage<T>(List<T> items, int page, boolean hasMore) {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+    // Deepest page served, skip() walks every entry before it
+    public static final int MAX_PAGE = 20;
+
+    public static int clampSize(Integer size) {
+        if (size == null || size <= 0) return DEFAULT_PAGE_SIZE;
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    public static int index(int page) {
+        int pageIndex = Math.max(page, 0);
+        if (pageIndex > MAX_PAGE) {
+            throw new IllegalArgumentException("page must be at most " + MAX_PAGE + ", narrow the search instead");
+        }
+        return pageIndex;
+    }
+
+    // One extra row tells whether there is a next page
+    public static <Q extends Query> Q slice(Q query, int pageIndex, int pageSize) {
+        query.skip((long) pageIndex * pageSize).limit(pageSize + 1);
+        return query;
+    }
+
+    // Rows fetched with slice()
+    public static <T> OffsetPage<T> of(List<T> rows, int pageIndex, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new OffsetPage<>(rows, pageIndex, false);
+        }
+        return new OffsetPage<>(rows.subList(0, pageSize), pageIndex, pageIndex < MAX_PAGE);
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Review;
+import com.example.demo.models.User;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Running reputation aggregates on User (ratingSum, ratingCount, a 1-5
+ * histogram, totalReviews and the rounded average), changed with $inc in
+ * the same transaction as the review insert/delete instead of re-reading
+ * every review. A reconciliation job rebuilds them from the reviews
+ * collection and logs any drift it had to fix.
+ *
+ * Also serves a user's reviews newest first, keyset-paginated on the
+ * (reviewedUserId, createdAt desc, _id desc) index, with the star
+ * distribution read straight from those aggregates.
+ */
+@Service
+public class ReputationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReputationService.class);
+
+    private static final int RECONCILE_BATCH = 500;
+    private static final String MIGRATIONS = "migrations";
+    private static final String BACKFILL_MARKER = "reputation-aggregates-backfill";
+    private static final String[] AGGREGATE_FIELDS = {"ratingSum", "ratingCount", "ratingHistogram", "totalReviews", "rating"};
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate transactions;
+
+    public ReputationService(MongoTemplate mongoTemplate, MongoTransactionManager transactionManager) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactions = new TransactionTemplate(transactionManager);
+    }
+
+    public Review submit(Review review) {
+        return MongoTransactions.execute(transactions, () -> {
+            Review saved = mongoTemplate.insert(review);
+            applyDelta(saved.getReviewedUserId(), saved.getRating(), 1);
+            return saved;
+        });
+    }
+
+    // False when it was already gone (e.g. a concurrent delete), only the reviewer's own review is removed
+    public boolean delete(Review review, String reviewerId) {
+        Boolean deleted = MongoTransactions.execute(transactions, () -> {
+            DeleteResult result = mongoTemplate.remove(
+                    Query.query(Criteria.where("_id").is(review.getId()).and("reviewerId").is(reviewerId)),
+                    Review.class);
+            if (result.getDeletedCount() != 1) {
+                return false;
+            }
+            applyDelta(review.getReviewedUserId(), review.getRating(), -1);
+            return true;
+        });
+        return Boolean.TRUE.equals(deleted);
+    }
+
+    private void applyDelta(String userId, int rating, int sign) {
+        User counts = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(userId)),
+                new Update()
+                        .inc("ratingSum", sign * rating)
+                        .inc("ratingCount", sign)
+                        .inc("ratingHistogram." + rating, sign)
+                        .inc("totalReviews", sign),
+                FindAndModifyOptions.options().returnNew(true),
+                User.class
+        );
+        if (counts == null) {
+            return;
+        }
+
+        // Only if nobody moved the counts since
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(userId)
+                        .and("ratingSum").is(counts.getRatingSum())
+                        .and("ratingCount").is(counts.getRatingCount())),
+                Update.update("rating", average(counts.getRatingSum(), counts.getRatingCount())),
+                User.class
+        );
+    }
+
+    // Same rounding as before: one decimal place
+    static double average(long sum, int count) {
+        return count <= 0 ? 0.0 : Math.round(sum * 10.0 / count) / 10.0;
+    }
+
+    // One-time fill for users whose reviews predate the aggregates, drift after that is the nightly job's
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        try {
+            if (mongoTemplate.exists(Query.query(Criteria.where("_id").is(BACKFILL_MARKER)), MIGRATIONS)) {
+                return;
+            }
+            if (reconcile()) {
+                mongoTemplate.save(new Document("_id", BACKFILL_MARKER).append("completedAt", new Date()), MIGRATIONS);
+            }
+        } catch (Exception e) {
+            logger.error("Reputation backfill check failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${reputation.reconcile.cron:0 30 3 * * *}")
+    public void reconcileNightly() {
+        reconcile();
+    }
+
+    /**
+     * Finds users whose stored aggregates differ from one pipeline over the
+     * reviews collection (plus users left with counts but no reviews), then
+     * rebuilds each of them with {@link #reconcileUser}. The snapshot only
+     * picks candidates, it is never written back. False if it failed.
+     */
+    public boolean reconcile() {
+        try {
+            long drifted = 0;
+
+            List<Document> batch = new ArrayList<>(RECONCILE_BATCH);
+            try (Stream<Document> rows = mongoTemplate.aggregateStream(
+                    Aggregation.newAggregation(countStars(Aggregation.group("reviewedUserId"))), "reviews", Document.class)) {
+                for (Document row : (Iterable<Document>) rows::iterator) {
+                    if (row.getString("_id") == null) {
+                        continue;
+                    }
+                    batch.add(row);
+                    if (batch.size() == RECONCILE_BATCH) {
+                        drifted += fixDrifted(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            drifted += fixDrifted(batch);
+
+            // Users left with counts but no reviews at all: anti-join users -> reviews, nothing held in memory
+            List<Document> orphans = List.of(
+                    new Document("$match", new Document("ratingCount", new Document("$gt", 0))),
+                    new Document("$lookup", new Document("from", "reviews")
+                            .append("let", new Document("uid", new Document("$toString", "$_id")))
+                            .append("pipeline", List.of(
+                                    new Document("$match", new Document("$expr",
+                                            new Document("$eq", List.of("$reviewedUserId", "$$uid")))),
+                                    new Document("$limit", 1),
+                                    new Document("$project", new Document("_id", 1))))
+                            .append("as", "anyReview")),
+                    new Document("$match", new Document("anyReview", new Document("$size", 0))),
+                    new Document("$project", new Document("_id", 1))
+            );
+            for (Document orphan : mongoTemplate.getCollection("users").aggregate(orphans).batchSize(RECONCILE_BATCH)) {
+                if (reconcileUser(orphan.get("_id").toString())) {
+                    drifted++;
+                }
+            }
+
+            if (drifted > 0) {
+                logger.warn("Reputation reconciliation fixed drift on {} users", drifted);
+            } else {
+                logger.info("Reputation reconciliation found no drift");
+            }
+            return true;
+        } catch (Exception e) {
+            logger.error("Reputation reconciliation failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // One indexed _id lookup per batch of snapshot rows, only the users that differ are rebuilt
+    private long fixDrifted(List<Document> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Map<String, Totals> snapshot = new HashMap<>();
+        for (Document row : rows) {
+            snapshot.put(row.getString("_id"), Totals.of(row));
+        }
+
+        Query query = Query.query(Criteria.where("_id").in(snapshot.keySet()));
+        query.fields().include(AGGREGATE_FIELDS);
+        long fixed = 0;
+        for (User user : mongoTemplate.find(query, User.class)) {
+            if (!snapshot.get(user.getId()).matches(user) && reconcileUser(user.getId())) {
+                fixed++;
+            }
+        }
+        return fixed;
+    }
+
+    /**
+     * Rebuilds one user's aggregates from their reviews. The reviews, the
+     * stored counts and the write share a transaction, so a review submitted
+     * or deleted meanwhile conflicts with this write and the whole thing is
+     * re-run, instead of stale totals overwriting fresh ones. True if the
+     * stored aggregates were wrong.
+     */
+    private boolean reconcileUser(String userId) {
+        Boolean fixed = MongoTransactions.execute(transactions, () -> {
+            Totals totals = Totals.of(mongoTemplate.aggregate(Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("reviewedUserId").is(userId)),
+                    countStars(Aggregation.group())), "reviews", Document.class).getUniqueMappedResult());
+
+            Query byId = Query.query(Criteria.where("_id").is(userId));
+            byId.fields().include(AGGREGATE_FIELDS);
+            User user = mongoTemplate.findOne(byId, User.class);
+            if (user == null || totals.matches(user)) {
+                return false;
+            }
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(userId)), totals.update(), User.class);
+            return true;
+        });
+        return Boolean.TRUE.equals(fixed);
+    }
+
+    // ratingSum, ratingCount and star1..star5 per group
+    private static GroupOperation countStars(GroupOperation group) {
+        group = group.sum("rating").as("ratingSum")
+                .count().as("ratingCount");
+        for (int star = 1; star <= 5; star++) {
+            group = group.sum(ConditionalOperators.when(Criteria.where("rating").is(star)).then(1).otherwise(0))
+                    .as("star" + star);
+        }
+        return group;
+    }
+
+    public CursorPage<Review> reviewsFor(String userId, String cursor, Integer limit) {
+        int size = CursorPage.clampLimit(limit);
+
+        Query query = new Query(Criteria.where("reviewedUserId").is(userId));
+        Criteria after = CursorPage.after(cursor, "createdAt");
+        if (after != null) {
+            query.addCriteria(after);
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+             .limit(size + 1);
+
+        List<Review> rows = mongoTemplate.find(query, Review.class);
+        return CursorPage.of(rows, size, Review::getCreatedAt, Review::getId);
+    }
+
+    // Star distribution from the precomputed aggregates - one indexed _id lookup
+    public Map<String, Object> summary(String userId) {
+        Query query = new Query(Criteria.where("_id").is(userId));
+        query.fields().include("rating", "ratingCount", "ratingHistogram");
+        User user = mongoTemplate.findOne(query, User.class);
+        if (user == null) return null;
+
+        Map<String, Integer> stored = user.getRatingHistogram();
+        Map<String, Integer> histogram = new LinkedHashMap<>();
+        for (int star = 5; star >= 1; star--) {
+            String key = String.valueOf(star);
+            histogram.put(key, stored == null ? 0 : stored.getOrDefault(key, 0));
+        }
+
+        return Map.of(
+                "rating", user.getRating(),
+                "ratingCount", user.getRatingCount(),
+                "histogram", histogram
+        );
+    }
+
+    // Aggregates as rebuilt from reviews, zero-count stars left out of the histogram
+    private record Totals(long sum, int count, Map<String, Integer> histogram) {
+
+        // Null row: the user has no reviews
+        static Totals of(Document row) {
+            Map<String, Integer> histogram = new HashMap<>();
+            if (row == null) {
+                return new Totals(0, 0, histogram);
+            }
+            for (int star = 1; star <= 5; star++) {
+                int n = ((Number) row.get("star" + star)).intValue();
+                if (n > 0) {
+                    histogram.put(String.valueOf(star), n);
+                }
+            }
+            return new Totals(((Number) row.get("ratingSum")).longValue(),
+                    ((Number) row.get("ratingCount")).intValue(), histogram);
+        }
+
+        boolean matches(User user) {
+            Map<String, Integer> stored = new HashMap<>();
+            if (user.getRatingHistogram() != null) {
+                // Missing and 0 both mean none
+                user.getRatingHistogram().forEach((star, n) -> {
+                    if (n != null && n != 0) {
+                        stored.put(star, n);
+                    }
+                });
+            }
+            return user.getRatingSum() == sum
+                    && user.getRatingCount() == count
+                    && user.getTotalReviews() == count
+                    && user.getRating() == average(sum, count)
+                    && stored.equals(histogram);
+        }
+
+        Update update() {
+            return new Update()
+                    .set("ratingSum", sum)
+                    .set("ratingCount", count)
+                    .set("ratingHistogram", histogram)
+                    .set("totalReviews", count)
+                    .set("rating", average(sum, count));
+        }
+    }
+}
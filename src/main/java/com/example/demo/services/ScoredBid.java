@@ -0,0 +1,8 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.User;
+
+// A bid with its bidder (projected) and stored score, before explaining
+public record ScoredBid(Bid bid, User bidder, double score) {
+}
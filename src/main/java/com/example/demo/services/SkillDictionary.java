@@ -0,0 +1,59 @@
+package com.example.demo.services;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns skill strings to small int ids so skill matching is a bit test
+ * instead of List.contains over strings. One dictionary per scoring batch:
+ * only that task's required skills are interned, a user skill the task
+ * doesn't require can't match and maps to {@link #UNKNOWN}, so ids (and
+ * the bitsets sized by them) stay as small as the task's skill list.
+ * Not thread-safe, build it before scoring in parallel.
+ */
+public class SkillDictionary {
+
+    public static final int UNKNOWN = -1;
+
+    // List.contains(null) is true when the list holds a null, keep that
+    static final int NULL_SKILL = 0;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private int lastId = NULL_SKILL;
+
+    public int intern(String skill) {
+        if (skill == null) {
+            return NULL_SKILL;
+        }
+        return ids.computeIfAbsent(skill, s -> ++lastId);
+    }
+
+    public int idOf(String skill) {
+        if (skill == null) {
+            return NULL_SKILL;
+        }
+        Integer id = ids.get(skill);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public int size() {
+        return lastId + 1;
+    }
+
+    // Bitset of the interned ids
+    public long[] bitsOf(List<String> skills) {
+        int[] skillIds = new int[skills.size()];
+        int max = 0;
+        for (int i = 0; i < skillIds.length; i++) {
+            skillIds[i] = intern(skills.get(i));
+            max = Math.max(max, skillIds[i]);
+        }
+
+        long[] bits = new long[(max >>> 6) + 1];
+        for (int id : skillIds) {
+            bits[id >>> 6] |= 1L << id;
+        }
+        return bits;
+    }
+}
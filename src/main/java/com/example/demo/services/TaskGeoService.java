@@ -0,0 +1,120 @@
+package com.example.demo.services;
+
+import com.example.demo.models.GeoLocation;
+import com.example.demo.models.Task;
+import com.example.demo.models.TaskCard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.NearQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * "Tasks near me" over the 2dsphere index on Task.position. The position is a
+ * GeoJSON copy of Task.location that is kept in sync on create/update.
+ */
+@Service
+public class TaskGeoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskGeoService.class);
+
+    public static final double DEFAULT_RADIUS_KM = 10;
+    public static final double MAX_RADIUS_KM = 100;
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private final MongoTemplate mongoTemplate;
+
+    public TaskGeoService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // GeoJSON stores longitude first
+    public static GeoJsonPoint toPoint(GeoLocation location) {
+        return location == null ? null : new GeoJsonPoint(location.getLng(), location.getLat());
+    }
+
+    public List<TaskCard> nearby(double lat, double lng, Double radiusKm, String category,
+                                 Double minBudget, Double maxBudget, Integer limit) {
+        if (lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+            throw new IllegalArgumentException("Invalid coordinates");
+        }
+        double radius = (radiusKm == null || radiusKm <= 0) ? DEFAULT_RADIUS_KM : Math.min(radiusKm, MAX_RADIUS_KM);
+        int size = (limit == null || limit <= 0) ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+
+        Query filter = new Query(Criteria.where("status").is("OPEN"));
+        if (category != null && !category.isBlank()) {
+            filter.addCriteria(Criteria.where("category").is(category));
+        }
+        if (minBudget != null || maxBudget != null) {
+            Criteria budget = Criteria.where("budget");
+            if (minBudget != null) budget = budget.gte(minBudget);
+            if (maxBudget != null) budget = budget.lte(maxBudget);
+            filter.addCriteria(budget);
+        }
+
+        NearQuery near = NearQuery.near(new GeoJsonPoint(lng, lat))
+                .spherical(true)
+                .maxDistance(new Distance(radius, Metrics.KILOMETERS))
+                .query(filter)
+                .limit(size);
+
+        // Sorted by distance, nearest first
+        GeoResults<TaskCard> results = mongoTemplate.geoNear(near, Task.class, "tasks", TaskCard.class);
+
+        List<TaskCard> tasks = new ArrayList<>(results.getContent().size());
+        for (GeoResult<TaskCard> result : results) {
+            TaskCard card = result.getContent();
+            card.setDistanceKm(Math.round(result.getDistance().getValue() * 100.0) / 100.0);
+            tasks.add(card);
+        }
+        return tasks;
+    }
+
+    // Fill position for tasks created before the field existed
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillPositions() {
+        backfillPositions(mongoTemplate, Task.class, Task::getId, Task::getLocation);
+    }
+
+    // Sets position from location on every document of the type that has a location but no position
+    static <T> void backfillPositions(MongoTemplate mongoTemplate, Class<T> type,
+                                      Function<T, String> id, Function<T, GeoLocation> location) {
+        String collection = mongoTemplate.getCollectionName(type);
+        Query missing = new Query(Criteria.where("location").ne(null).and("position").exists(false));
+        missing.fields().include("location");
+
+        int updated = 0;
+        try (Stream<T> stream = mongoTemplate.stream(missing, type)) {
+            for (T doc : (Iterable<T>) stream::iterator) {
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(id.apply(doc))),
+                        Update.update("position", toPoint(location.apply(doc))),
+                        type
+                );
+                updated++;
+            }
+        } catch (Exception e) {
+            logger.error("Position backfill on {} failed: {}", collection, e.getMessage());
+        }
+
+        if (updated > 0) {
+            logger.info("Backfilled GeoJSON position for {} {}", updated, collection);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Task;
+import com.example.demo.models.TaskCard;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Keyset-paginated task listings, newest first, returned as TaskCard
+ * projections. Each listing is backed by one of the compound indexes on Task.
+ */
+@Service
+public class TaskListingService {
+
+    private final MongoTemplate mongoTemplate;
+
+    public TaskListingService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public CursorPage<TaskCard> openTasks(String cursor, Integer limit) {
+        return page(Criteria.where("status").is("OPEN"), cursor, limit);
+    }
+
+    public CursorPage<TaskCard> byCategory(String category, String cursor, Integer limit) {
+        return page(Criteria.where("category").is(category), cursor, limit);
+    }
+
+    public CursorPage<TaskCard> postedBy(String posterId, String cursor, Integer limit) {
+        return page(Criteria.where("posterId").is(posterId), cursor, limit);
+    }
+
+    public CursorPage<TaskCard> assignedTo(String userId, String cursor, Integer limit) {
+        return page(Criteria.where("assignedTo").is(userId), cursor, limit);
+    }
+
+    private CursorPage<TaskCard> page(Criteria filter, String cursor, Integer limit) {
+        int size = CursorPage.clampLimit(limit);
+
+        Query query = new Query(filter);
+        Criteria after = CursorPage.after(cursor, "createdAt");
+        if (after != null) {
+            query.addCriteria(after);
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+             .limit(size + 1);
+
+        // DTO projection: only TaskCard's fields are fetched
+        List<TaskCard> rows = mongoTemplate.query(Task.class)
+                .as(TaskCard.class)
+                .matching(query)
+                .all();
+
+        return CursorPage.of(rows, size, TaskCard::getCreatedAt, TaskCard::getId);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.services;
+
+import com.example.demo.models.TaskCard;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Full-text task search over the weighted text index on Task
+ * (title > requiredSkills > category > description). Mongo tokenizes and
+ * stems the keywords; results are OPEN tasks ranked by text score.
+ */
+@Service
+public class TaskSearchService {
+
+    private static final int MAX_KEYWORD_LENGTH = 200;
+
+    private final MongoTemplate mongoTemplate;
+
+    public TaskSearchService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public OffsetPage<TaskCard> search(String keyword, int page, Integer size) {
+        if (keyword == null || keyword.isBlank()) {
+            throw new IllegalArgumentException("Keyword is required");
+        }
+        String terms = keyword.trim();
+        if (terms.length() > MAX_KEYWORD_LENGTH) {
+            terms = terms.substring(0, MAX_KEYWORD_LENGTH);
+        }
+
+        int pageSize = OffsetPage.clampSize(size);
+        int pageIndex = OffsetPage.index(page);
+
+        TextQuery query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(terms))
+                .sortByScore();
+        query.includeScore();
+        query.addCriteria(Criteria.where("status").is("OPEN"));
+        query.fields()
+                .include("title", "category", "location", "budget", "deadline",
+                        "posterId", "posterName", "assignedTo", "assignedToName",
+                        "status", "createdAt", "bidCount");
+        OffsetPage.slice(query, pageIndex, pageSize);
+
+        List<TaskCard> rows = mongoTemplate.find(query, TaskCard.class, "tasks");
+        return OffsetPage.of(rows, pageIndex, pageSize);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.Task;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Task lifecycle transitions as single conditional findAndModify calls.
+ * The precondition (current status + who is acting) is part of the query,
+ * so of two concurrent requests exactly one wins and the other gets a 409.
+ */
+@Service
+public class TaskTransitionService {
+
+    private final MongoTemplate mongoTemplate;
+    private final CounterService counters;
+    private final TransactionTemplate transactions;
+
+    public TaskTransitionService(MongoTemplate mongoTemplate, CounterService counters,
+                                 MongoTransactionManager transactionManager) {
+        this.mongoTemplate = mongoTemplate;
+        this.counters = counters;
+        this.transactions = new TransactionTemplate(transactionManager);
+    }
+
+    // Edits the poster-owned fields of an OPEN task, $set only, so counters and status written concurrently survive
+    public Task edit(String taskId, String posterId, Task changes) {
+        Task task = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(taskId)
+                        .and("posterId").is(posterId)
+                        .and("status").is("OPEN")),
+                new Update()
+                        .set("title", changes.getTitle())
+                        .set("description", changes.getDescription())
+                        .set("category", changes.getCategory())
+                        .set("location", changes.getLocation())
+                        .set("position", TaskGeoService.toPoint(changes.getLocation()))
+                        .set("budget", changes.getBudget())
+                        .set("deadline", changes.getDeadline())
+                        .set("updatedAt", LocalDateTime.now().toString()),
+                FindAndModifyOptions.options().returnNew(true),
+                Task.class
+        );
+
+        if (task == null) {
+            Task current = mongoTemplate.findById(taskId, Task.class);
+            if (current == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found");
+            }
+            if (!posterId.equals(current.getPosterId())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You can only update your own tasks");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Task can only be edited while OPEN");
+        }
+        return task;
+    }
+
+    // ASSIGNED -> IN_PROGRESS, only by the assignee
+    public Task start(String taskId, String userId) {
+        Task task = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(taskId)
+                        .and("assignedTo").is(userId)
+                        .and("status").is("ASSIGNED")),
+                new Update()
+                        .set("status", "IN_PROGRESS")
+                        .set("updatedAt", LocalDateTime.now().toString()),
+                FindAndModifyOptions.options().returnNew(true),
+                Task.class
+        );
+
+        if (task == null) {
+            throw rejectedTransition(taskId, userId,
+                    "Only the assigned user can start this task", "Task cannot be started");
+        }
+        return task;
+    }
+
+    // ASSIGNED / IN_PROGRESS -> COMPLETED, only by the assignee
+    public Task complete(String taskId, String userId) {
+        Task task = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(taskId)
+                        .and("assignedTo").is(userId)
+                        .and("status").in(List.of("ASSIGNED", "IN_PROGRESS"))),
+                new Update()
+                        .set("status", "COMPLETED")
+                        .set("updatedAt", LocalDateTime.now().toString()),
+                FindAndModifyOptions.options().returnNew(true),
+                Task.class
+        );
+
+        if (task == null) {
+            throw rejectedTransition(taskId, userId,
+                    "Only the assigned user can complete this task", "Task cannot be completed");
+        }
+
+        // Update both users' completed tasks count
+        counters.incrementTasksCompleted(task.getAssignedTo());
+        counters.incrementTasksCompleted(task.getPosterId());
+
+        return task;
+    }
+
+    /**
+     * OPEN -> ASSIGNED to the bidder (only by the poster), the bid
+     * PENDING -> ACCEPTED and every other pending bid -> REJECTED with one
+     * updateMany, all in a single transaction.
+     */
+    public Task accept(Bid bid, String posterId) {
+        try {
+            return transactions.execute(status -> doAccept(bid, posterId));
+        } catch (DataAccessException e) {
+            if (MongoTransactions.isTransient(e)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Task was updated concurrently, please retry");
+            }
+            throw e;
+        }
+    }
+
+    private Task doAccept(Bid bid, String posterId) {
+        Task task = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(bid.getTaskId())
+                        .and("posterId").is(posterId)
+                        .and("status").is("OPEN")),
+                new Update()
+                        .set("status", "ASSIGNED")
+                        .set("assignedTo", bid.getBidderId())
+                        .set("assignedToName", bid.getBidderName())
+                        .set("updatedAt", LocalDateTime.now().toString()),
+                FindAndModifyOptions.options().returnNew(true),
+                Task.class
+        );
+
+        if (task == null) {
+            Task current = mongoTemplate.findById(bid.getTaskId(), Task.class);
+            if (current == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found");
+            }
+            if (!posterId.equals(current.getPosterId())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the task poster can accept bids");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Task is no longer open");
+        }
+
+        // Throwing here rolls the task assignment back
+        Bid accepted = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(bid.getId()).and("status").is("PENDING")),
+                Update.update("status", "ACCEPTED"),
+                FindAndModifyOptions.options().returnNew(true),
+                Bid.class
+        );
+        if (accepted == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Bid is no longer pending");
+        }
+
+        // Reject all other pending bids in one round trip
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("taskId").is(task.getId())
+                        .and("status").is("PENDING")
+                        .and("_id").ne(accepted.getId())),
+                Update.update("status", "REJECTED"),
+                Bid.class
+        );
+
+        bid.setStatus(accepted.getStatus());
+        return task;
+    }
+
+    // PENDING -> REJECTED only, so a concurrent accept can't be overwritten
+    public Bid reject(String bidId) {
+        Bid rejected = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(bidId).and("status").is("PENDING")),
+                Update.update("status", "REJECTED"),
+                FindAndModifyOptions.options().returnNew(true),
+                Bid.class
+        );
+        if (rejected == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Bid is no longer pending");
+        }
+        return rejected;
+    }
+
+    // Cold path: work out why the conditional update matched nothing
+    private ResponseStatusException rejectedTransition(String taskId, String userId,
+                                                       String forbidden, String conflict) {
+        Task current = mongoTemplate.findById(taskId, Task.class);
+        if (current == null) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found");
+        }
+        if (!userId.equals(current.getAssignedTo())) {
+            return new ResponseStatusException(HttpStatus.FORBIDDEN, forbidden);
+        }
+        return new ResponseStatusException(HttpStatus.CONFLICT, conflict + " while " + current.getStatus());
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.services;
+
+import com.example.demo.models.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Skill search over User.normalizedSkills: every skill lowercased, plus each
+ * word of it, leading the multikey skill_rating_reviews index. A search is an anchored prefix regex on
+ * that index, so "plumb" finds "Plumbing" and "pipe" finds "Pipe fitting",
+ * and the cost depends on the matches, not on the number of users.
+ * The top-rated leaderboards read the (rating, totalReviews) indexes.
+ */
+@Service
+public class UserSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchService.class);
+
+    private static final int MAX_SKILL_LENGTH = 100;
+
+    public static final int DEFAULT_TOP_RATED = 10;
+    public static final int MAX_TOP_RATED = 50;
+    private static final double DEFAULT_REGION_KM = 25;
+    private static final double MAX_REGION_KM = 500;
+    private static final double EARTH_RADIUS_KM = 6378.1;
+
+    // Public profile fields only: no password, email or phone
+    static final String[] CARD_FIELDS = {
+            "name", "bio", "profileImage", "location", "role", "rating", "totalReviews",
+            "tasksCompleted", "tasksPosted", "skills", "isVerified", "createdAt"};
+
+    private final MongoTemplate mongoTemplate;
+
+    public UserSearchService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // "Pet Care" -> ["pet care", "pet", "care"]
+    public static List<String> normalizeSkills(List<String> skills) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (skills != null) {
+            for (String skill : skills) {
+                if (skill == null || skill.isBlank()) {
+                    continue;
+                }
+                String full = normalize(skill);
+                normalized.add(full);
+                for (String word : full.split("[^\\p{L}\\p{N}]+")) {
+                    if (!word.isEmpty()) {
+                        normalized.add(word);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(normalized);
+    }
+
+    private static String normalize(String skill) {
+        return skill.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    // Matches users with a skill, or a word of one, starting with the query
+    public static Criteria skillPrefix(String skill) {
+        return Criteria.where("normalizedSkills").regex("^" + escapeRegex(normalize(skill)));
+    }
+
+    public OffsetPage<User> searchBySkill(String skill, int page, Integer size) {
+        if (skill == null || skill.isBlank()) {
+            throw new IllegalArgumentException("Skill is required");
+        }
+        String term = skill.length() > MAX_SKILL_LENGTH ? skill.substring(0, MAX_SKILL_LENGTH) : skill;
+
+        int pageSize = OffsetPage.clampSize(size);
+        int pageIndex = OffsetPage.index(page);
+
+        Query query = Query.query(skillPrefix(term))
+                .with(Sort.by(Sort.Order.desc("rating"), Sort.Order.asc("_id")));
+        query.fields().include(CARD_FIELDS);
+        OffsetPage.slice(query, pageIndex, pageSize);
+
+        List<User> rows = mongoTemplate.find(query, User.class);
+        return OffsetPage.of(rows, pageIndex, pageSize);
+    }
+
+    /**
+     * Users with at least one review, best rating first (more reviews wins a
+     * tie). Optionally only those with a skill equal to {@code category}
+     * (or a word of one), and/or within {@code radiusKm} of a point.
+     */
+    public List<User> topRated(int limit, String category, Double lat, Double lng, Double radiusKm) {
+        int size = limit <= 0 ? DEFAULT_TOP_RATED : Math.min(limit, MAX_TOP_RATED);
+
+        Criteria criteria = Criteria.where("totalReviews").gt(0);
+        if (category != null && !category.isBlank()) {
+            criteria.and("normalizedSkills").is(normalize(category));
+        }
+        if (lat != null || lng != null) {
+            if (lat == null || lng == null || lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+                throw new IllegalArgumentException("Invalid coordinates");
+            }
+            double km = radiusKm == null || radiusKm <= 0 ? DEFAULT_REGION_KM : Math.min(radiusKm, MAX_REGION_KM);
+            // $centerSphere takes the radius in radians
+            criteria.and("position").withinSphere(new Circle(new Point(lng, lat), km / EARTH_RADIUS_KM));
+        }
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Order.desc("rating"), Sort.Order.desc("totalReviews")))
+                .limit(size);
+        query.fields().include(CARD_FIELDS);
+        return mongoTemplate.find(query, User.class);
+    }
+
+    // Backslash-escape regex metacharacters so the prefix stays a literal
+    private static String escapeRegex(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (char c : text.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    // Fill normalizedSkills for users saved before the field existed
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillNormalizedSkills() {
+        Query missing = new Query(Criteria.where("normalizedSkills").exists(false));
+        missing.fields().include("skills");
+
+        int updated = 0;
+        try (Stream<User> stream = mongoTemplate.stream(missing, User.class)) {
+            for (User user : (Iterable<User>) stream::iterator) {
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(user.getId())),
+                        Update.update("normalizedSkills", normalizeSkills(user.getSkills())),
+                        User.class
+                );
+                updated++;
+            }
+        } catch (Exception e) {
+            logger.error("User skill backfill failed: {}", e.getMessage());
+        }
+
+        if (updated > 0) {
+            logger.info("Backfilled normalized skills for {} users", updated);
+        }
+    }
+
+    // The old single-field normalizedSkills index is a prefix of skill_rating_reviews, only write cost
+    @EventListener(ApplicationReadyEvent.class)
+    public void dropSingleSkillIndex() {
+        try {
+            IndexOperations indexes = mongoTemplate.indexOps(User.class);
+            for (IndexInfo index : indexes.getIndexInfo()) {
+                if (index.getIndexFields().size() == 1 && index.isIndexForFields(List.of("normalizedSkills"))) {
+                    indexes.dropIndex(index.getName());
+                    logger.info("Dropped redundant index {} on users", index.getName());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Dropping the single-field skill index failed: {}", e.getMessage());
+        }
+    }
+
+    // Fill position for users saved before the field existed
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillPositions() {
+        TaskGeoService.backfillPositions(mongoTemplate, User.class, User::getId, User::getLocation);
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.Task;
+import com.example.demo.models.Wallet;
+import com.example.demo.models.WalletTransaction;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Wallet balance snapshots plus the append-only wallet_transactions ledger.
+ * Every movement is a single atomic write on the wallet's integer paise
+ * balance ($inc, debits carry the balance check in the filter) and one ledger
+ * insert, both in the same transaction, so there are no lost updates and
+ * the wallet document stays small no matter how long the history gets.
+ */
+@Service
+public class WalletService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate transactions;
+
+    public WalletService(MongoTemplate mongoTemplate, MongoTransactionManager transactionManager) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactions = new TransactionTemplate(transactionManager);
+    }
+
+    // Upsert, so two first requests can't race each other into creating a wallet twice
+    public Wallet getOrCreate(String userId) {
+        return retryOnDuplicate(() -> mongoTemplate.findAndModify(
+                Query.query(Criteria.where("userId").is(userId)),
+                new Update().setOnInsert("userId", userId).setOnInsert("balancePaise", 0L),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Wallet.class
+        ));
+    }
+
+    public Wallet credit(String userId, long amountPaise, String reference) {
+        return retryOnDuplicate(() -> inTransaction(() -> {
+            Wallet wallet = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("userId").is(userId)),
+                    new Update()
+                            .inc("balancePaise", amountPaise)
+                            .set("updatedAt", LocalDateTime.now().toString())
+                            .setOnInsert("userId", userId),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    Wallet.class
+            );
+            record(wallet, "CREDIT", amountPaise, reference);
+            return wallet;
+        }));
+    }
+
+    // Null when the balance doesn't cover the amount
+    public Wallet debit(String userId, long amountPaise, String reference) {
+        return inTransaction(() -> debitInTransaction(userId, amountPaise, reference));
+    }
+
+    /**
+     * Pays an accepted bid from the poster's wallet: bid ACCEPTED -> PAID,
+     * its task ASSIGNED -> IN_PROGRESS (only by the poster) and the debit,
+     * all conditional updates in one transaction. Any failed precondition
+     * throws and rolls the others back.
+     */
+    public Wallet payForBid(String bidId, String posterId) {
+        return inTransaction(() -> {
+            Bid bid = markPaid(bidId);
+
+            Task task = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(bid.getTaskId())
+                            .and("posterId").is(posterId)
+                            .and("assignedTo").is(bid.getBidderId())
+                            .and("status").is("ASSIGNED")),
+                    new Update()
+                            .set("status", "IN_PROGRESS")
+                            .set("updatedAt", LocalDateTime.now().toString()),
+                    FindAndModifyOptions.options().returnNew(true),
+                    Task.class
+            );
+            if (task == null) {
+                Task current = mongoTemplate.findById(bid.getTaskId(), Task.class);
+                if (current == null) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found");
+                }
+                if (!posterId.equals(current.getPosterId())) {
+                    throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the task poster can pay for this bid");
+                }
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Task cannot be paid while " + current.getStatus());
+            }
+
+            Wallet wallet = debitInTransaction(posterId, toPaise(bid.getBidAmount()), "Task Payment: " + task.getId());
+            if (wallet == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient wallet balance");
+            }
+            return wallet;
+        });
+    }
+
+    /**
+     * Settles a bid paid through Razorpay: bid ACCEPTED -> PAID and the
+     * capped wallet debit in one transaction, so a bid that isn't accepted
+     * (any more) is never charged, and never charged twice.
+     */
+    public Wallet settleExternalPayment(String bidId, String userId, String paymentId) {
+        return retryOnDuplicate(() -> inTransaction(() -> {
+            Bid bid = markPaid(bidId);
+            return debitCappedInTransaction(userId, toPaise(bid.getBidAmount()),
+                    "Payment for task: " + bid.getTaskTitle() + " (Payment ID: " + paymentId + ")");
+        }));
+    }
+
+    // Only this status change, so a concurrent rescore's aiScore/aiExplanation survive
+    private Bid markPaid(String bidId) {
+        Bid bid = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(bidId).and("status").is("ACCEPTED")),
+                Update.update("status", "PAID"),
+                FindAndModifyOptions.options().returnNew(true),
+                Bid.class
+        );
+        if (bid == null) {
+            Bid current = mongoTemplate.findById(bidId, Bid.class);
+            if (current == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Bid not found");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Only an accepted bid can be paid");
+        }
+        return bid;
+    }
+
+    // The balance check and the $inc are one write
+    private Wallet debitInTransaction(String userId, long amountPaise, String reference) {
+        Wallet wallet = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("userId").is(userId)
+                        .and("balancePaise").gte(amountPaise)),
+                new Update()
+                        .inc("balancePaise", -amountPaise)
+                        .set("updatedAt", LocalDateTime.now().toString()),
+                FindAndModifyOptions.options().returnNew(true),
+                Wallet.class
+        );
+        if (wallet == null) {
+            return null;
+        }
+        record(wallet, "DEBIT", amountPaise, reference);
+        return wallet;
+    }
+
+    // Externally settled payments: never go below zero, the ledger gets what was actually taken
+    private Wallet debitCappedInTransaction(String userId, long amountPaise, String reference) {
+        getOrCreate(userId);
+        String now = LocalDateTime.now().toString();
+
+        // One pipeline write: balancePaise = max(0, balancePaise - amount), returns the old document
+        Document capped = new Document("$set", new Document()
+                .append("balancePaise", new Document("$max", List.of(0L,
+                        new Document("$subtract", List.of("$balancePaise", amountPaise)))))
+                .append("updatedAt", now));
+        Wallet before = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("userId").is(userId)),
+                AggregationUpdate.from(List.of(context -> capped)),
+                FindAndModifyOptions.options().returnNew(false),
+                Wallet.class
+        );
+
+        long debited = Math.min(before.getBalancePaise(), amountPaise);
+        before.setBalancePaise(before.getBalancePaise() - debited);
+        before.setUpdatedAt(now);
+        record(before, "DEBIT", debited, reference);
+        return before;
+    }
+
+    private void record(Wallet wallet, String type, long amountPaise, String reference) {
+        WalletTransaction tx = new WalletTransaction();
+        tx.setUserId(wallet.getUserId());
+        tx.setType(type);
+        tx.setAmountPaise(amountPaise);
+        tx.setReference(reference);
+        tx.setCreatedAt(wallet.getUpdatedAt());
+        mongoTemplate.insert(tx);
+    }
+
+    // Same-wallet transactions conflict rather than wait, MongoTransactions re-runs them
+    private <T> T inTransaction(Supplier<T> work) {
+        return MongoTransactions.execute(transactions, work);
+    }
+
+    /**
+     * Two first upserts for the same user can both miss and try to insert;
+     * the unique userId index lets one through and fails the other, which
+     * then simply matches the wallet that won.
+     */
+    private static <T> T retryOnDuplicate(Supplier<T> upsert) {
+        try {
+            return upsert.get();
+        } catch (DuplicateKeyException e) {
+            return upsert.get();
+        }
+    }
+
+    // Rupee amounts from requests and bids, rounded to the nearest paisa
+    public static long toPaise(double rupees) {
+        return Math.round(rupees * 100);
+    }
+
+    public CursorPage<WalletTransaction> history(String userId, String cursor, Integer limit) {
+        int size = CursorPage.clampLimit(limit);
+
+        Query query = new Query(Criteria.where("userId").is(userId));
+        Criteria after = CursorPage.after(cursor, "createdAt");
+        if (after != null) {
+            query.addCriteria(after);
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+             .limit(size + 1);
+
+        List<WalletTransaction> rows = mongoTemplate.find(query, WalletTransaction.class);
+        return CursorPage.of(rows, size, WalletTransaction::getCreatedAt, WalletTransaction::getId);
+    }
+
+    /**
+     * Folds duplicate wallets of one user (left by the old read-then-save
+     * creation) into the oldest one, so the unique userId index can be
+     * built. Balances in either unit are added up and embedded histories
+     * concatenated, both picked up later by the paise and ledger
+     * migrations. Each user is merged in its own transaction. Runs from
+     * {@link com.example.demo.config.MongoConfig} before the template that
+     * creates the indexes exists.
+     */
+    public static void mergeDuplicateWallets(MongoDatabaseFactory dbFactory) {
+        MongoCollection<Document> wallets = dbFactory.getMongoDatabase().getCollection("wallets");
+        List<Document> duplicates = wallets.aggregate(List.of(
+                new Document("$group", new Document("_id", "$userId")
+                        .append("ids", new Document("$push", "$_id"))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$match", new Document("count", new Document("$gt", 1)))
+        )).into(new ArrayList<>());
+
+        int merged = 0;
+        for (Document group : duplicates) {
+            try (ClientSession session = dbFactory.getSession(ClientSessionOptions.builder().build())) {
+                session.withTransaction(() -> {
+                    List<Document> copies = wallets.find(session, Filters.in("_id", group.getList("ids", Object.class)))
+                            .sort(Sorts.ascending("_id"))
+                            .into(new ArrayList<>());
+                    if (copies.size() < 2) {
+                        return null;
+                    }
+
+                    Document keep = copies.get(0);
+                    Document set = new Document();
+                    long paise = 0;
+                    double rupees = 0;
+                    boolean hasRupees = false;
+                    List<Object> history = new ArrayList<>();
+                    boolean hasHistory = false;
+                    for (Document copy : copies) {
+                        Number balancePaise = copy.get("balancePaise", Number.class);
+                        paise += balancePaise == null ? 0 : balancePaise.longValue();
+                        if (copy.get("balance") instanceof Number balance) {
+                            rupees += balance.doubleValue();
+                            hasRupees = true;
+                        }
+                        if (copy.get("transactions") instanceof List<?> embedded) {
+                            history.addAll(embedded);
+                            hasHistory = true;
+                        }
+                    }
+                    set.append("balancePaise", paise);
+                    if (hasRupees) {
+                        set.append("balance", rupees);
+                    }
+                    if (hasHistory) {
+                        set.append("transactions", history);
+                    }
+
+                    wallets.updateOne(session, Filters.eq("_id", keep.get("_id")), new Document("$set", set));
+                    wallets.deleteMany(session, Filters.in("_id",
+                            copies.subList(1, copies.size()).stream().map(copy -> copy.get("_id")).toList()));
+                    return null;
+                });
+                merged++;
+            } catch (Exception e) {
+                logger.error("Could not merge duplicate wallets of user {}: {}", group.get("_id"), e.getMessage());
+            }
+        }
+
+        if (merged > 0) {
+            logger.info("Merged duplicate wallets of {} users", merged);
+        }
+    }
+
+    /**
+     * Copies histories still embedded in wallets.transactions into the
+     * ledger, then drops the array. Ledger ids are derived from (wallet,
+     * position), so a run that dies halfway can simply be repeated, and the
+     * array is only unset if it hasn't grown since it was copied.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateEmbeddedHistory() {
+        Query embedded = new Query(Criteria.where("transactions").exists(true));
+        embedded.fields().include("userId", "transactions");
+
+        int wallets = 0;
+        int entries = 0;
+        try (Stream<Document> stream = mongoTemplate.stream(embedded, Document.class, "wallets")) {
+            for (Document wallet : (Iterable<Document>) stream::iterator) {
+                String walletId = wallet.get("_id").toString();
+                String userId = wallet.getString("userId");
+                List<?> history = wallet.getList("transactions", Object.class);
+
+                if (!history.isEmpty()) {
+                    BulkOperations bulk = mongoTemplate.bulkOps(
+                            BulkOperations.BulkMode.UNORDERED, WalletTransaction.class);
+                    for (int i = 0; i < history.size(); i++) {
+                        if (!(history.get(i) instanceof Document tx)) continue;
+                        Number amount = tx.get("amount", Number.class);
+                        bulk.upsert(
+                                Query.query(Criteria.where("_id").is(ledgerId(walletId, i))),
+                                new Update()
+                                        .setOnInsert("userId", userId)
+                                        .setOnInsert("type", tx.getString("type"))
+                                        .setOnInsert("amountPaise", amount == null ? 0L : toPaise(amount.doubleValue()))
+                                        .setOnInsert("reference", tx.getString("reference"))
+                                        .setOnInsert("createdAt", tx.getString("createdAt"))
+                        );
+                    }
+                    bulk.execute();
+                    entries += history.size();
+                }
+
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(wallet.get("_id"))
+                                .and("transactions").size(history.size())),
+                        new Update().unset("transactions"),
+                        "wallets"
+                );
+                wallets++;
+            }
+        } catch (Exception e) {
+            logger.error("Wallet ledger migration failed: {}", e.getMessage());
+        }
+
+        if (wallets > 0) {
+            logger.info("Moved {} embedded transactions from {} wallets into the ledger", entries, wallets);
+        }
+    }
+
+    /**
+     * Converts rupee doubles left by older versions into integer paise.
+     * Each document is rewritten by one pipeline update, so a wallet that
+     * was already credited in paise before this ran keeps both amounts.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateToPaise() {
+        try {
+            long wallets = mongoTemplate.getCollection("wallets").updateMany(
+                    new Document("balance", new Document("$exists", true)),
+                    List.of(
+                            new Document("$set", new Document("balancePaise", new Document("$add", List.of(
+                                    new Document("$ifNull", List.of("$balancePaise", 0L)),
+                                    toPaiseExpression("$balance"))))),
+                            new Document("$unset", "balance")
+                    )
+            ).getModifiedCount();
+
+            long entries = mongoTemplate.getCollection("wallet_transactions").updateMany(
+                    new Document("amount", new Document("$exists", true)),
+                    List.of(
+                            new Document("$set", new Document("amountPaise", toPaiseExpression("$amount"))),
+                            new Document("$unset", "amount")
+                    )
+            ).getModifiedCount();
+
+            if (wallets > 0 || entries > 0) {
+                logger.info("Converted {} wallet balances and {} ledger entries to paise", wallets, entries);
+            }
+        } catch (Exception e) {
+            logger.error("Wallet paise migration failed: {}", e.getMessage());
+        }
+    }
+
+    // {$toLong: {$round: [{$multiply: [field, 100]}, 0]}}, null counts as 0
+    private static Document toPaiseExpression(String field) {
+        return new Document("$toLong", new Document("$round", List.of(
+                new Document("$multiply", List.of(new Document("$ifNull", List.of(field, 0)), 100)), 0)));
+    }
+
+    // Stable ObjectId for the i-th embedded entry of a wallet
+    static ObjectId ledgerId(String walletId, int index) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest((walletId + ":" + index).getBytes(StandardCharsets.UTF_8));
+            return new ObjectId(Arrays.copyOf(hash, 12));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Bid;
+import com.example.demo.models.Task;
+import com.example.demo.models.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GeminiService against a local stub of the generateContent endpoint whose
+ * status and latency each test sets: the deadline, the in-flight cap and the
+ * circuit breaker all have to end in the local explanation without waiting
+ * on the remote.
+ */
+class GeminiServiceTest {
+
+    private static final String LOCAL = "local explanation";
+    private static final String REMOTE = "from gemini";
+
+    private StubGemini stub;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new StubGemini();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop();
+    }
+
+    @Test
+    void deadlineReturnsLocalExplanation() {
+        stub.delayMs = 3000;
+        GeminiService gemini = service(200, 16, 1, 30);
+
+        long start = System.nanoTime();
+        String text = gemini.generateExplanation(new User(), new Task(), new Bid(), 50).block(Duration.ofSeconds(5));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(text).isEqualTo(LOCAL);
+        assertThat(elapsedMs).isLessThan(2000);
+        // A timeout counts as a failure, with a threshold of one it opens the breaker
+        assertThat(gemini.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void inFlightCapRejectsExtraCalls() {
+        stub.delayMs = 1000;
+        GeminiService gemini = service(5000, 2, 5, 30);
+
+        CompletableFuture<String> first = gemini.generate("first", false).toFuture();
+        CompletableFuture<String> second = gemini.generate("second", false).toFuture();
+        await(() -> stub.hits.get() == 2);
+
+        // Both permits are taken: the third call is refused at once, never sent
+        long start = System.nanoTime();
+        assertThat(gemini.generate("third", false).blockOptional(Duration.ofSeconds(5))).isEmpty();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(500);
+        assertThat(stub.hits.get()).isEqualTo(2);
+
+        assertThat(first.join()).isEqualTo(REMOTE);
+        assertThat(second.join()).isEqualTo(REMOTE);
+
+        // Permits come back in doFinally, just after the callers got their results,
+        // and refusals don't trip the breaker
+        await(() -> REMOTE.equals(gemini.generate("fourth", false).block(Duration.ofSeconds(5))));
+        assertThat(gemini.breakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {429, 503})
+    void breakerOpensOnFailureStreakAndHalfOpensAfterCoolDown(int status) throws InterruptedException {
+        stub.status = status;
+        GeminiService gemini = service(2000, 16, 3, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(gemini.generate("failing", false).blockOptional(Duration.ofSeconds(5))).isEmpty();
+        }
+        assertThat(gemini.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // Open: the fallback comes back without a request
+        assertThat(gemini.generateExplanation(new User(), new Task(), new Bid(), 50).block(Duration.ofSeconds(5)))
+                .isEqualTo(LOCAL);
+        assertThat(stub.hits.get()).isEqualTo(3);
+
+        Thread.sleep(1100);
+        stub.status = 200;
+        stub.delayMs = 500;
+
+        // After the cool-down exactly one trial call goes through
+        CompletableFuture<String> trial = gemini.generate("trial", false).toFuture();
+        assertThat(gemini.breakerState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(gemini.generate("during trial", false).blockOptional(Duration.ofSeconds(5))).isEmpty();
+
+        assertThat(trial.join()).isEqualTo(REMOTE);
+        assertThat(stub.hits.get()).isEqualTo(4);
+        assertThat(gemini.breakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedTrialOpensBreakerAgain() throws InterruptedException {
+        stub.status = 500;
+        GeminiService gemini = service(2000, 16, 2, 1);
+
+        gemini.generate("failing", false).blockOptional(Duration.ofSeconds(5));
+        gemini.generate("failing", false).blockOptional(Duration.ofSeconds(5));
+        assertThat(gemini.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        Thread.sleep(1100);
+        assertThat(gemini.generate("trial", false).blockOptional(Duration.ofSeconds(5))).isEmpty();
+
+        assertThat(gemini.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(stub.hits.get()).isEqualTo(3);
+    }
+
+    private GeminiService service(long timeoutMs, int maxInFlight, int failureThreshold, long openSeconds) {
+        // Only the fallback text matters here, not the real scoring explanation
+        BidRankingService ranking = new BidRankingService() {
+            @Override
+            public String explain(User user, Task task, Bid bid, double score) {
+                return LOCAL;
+            }
+        };
+        ExplanationCache cache = new ExplanationCache(null, new SimpleMeterRegistry(), 100, false, 1);
+
+        return new GeminiService(WebClient.builder(), ranking, cache, new ObjectMapper(),
+                "test-key", stub.baseUrl(), timeoutMs, maxInFlight, failureThreshold, openSeconds, 20);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met within 5s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Answers every POST with {@code status} after {@code delayMs}; a 200
+     * carries a generateContent reply with {@link #REMOTE} as the text.
+     */
+    private static class StubGemini {
+
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        final AtomicInteger hits = new AtomicInteger();
+        volatile int status = 200;
+        volatile long delayMs;
+
+        StubGemini() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            hits.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.close();
+                return;
+            }
+
+            int code = status;
+            String body = code == 200
+                    ? "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + REMOTE + "\"}]}}]}"
+                    : "{\"error\":{\"code\":" + code + "}}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}